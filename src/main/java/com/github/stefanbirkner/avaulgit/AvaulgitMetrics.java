@@ -0,0 +1,159 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Publishes Micrometer metrics about the decryption of secrets. Declare it as
+ * a bean of your application and Spring Boot Actuator binds it to the meter
+ * registry:
+ * <pre>
+ * &#64;Bean
+ * AvaulgitMetrics avaulgitMetrics() {
+ *     return new AvaulgitMetrics();
+ * }
+ * </pre>
+ * <p>The metrics are
+ * <dl>
+ *   <dt>{@code avaulgit.decryption}</dt>
+ *   <dd>Timer for the decryption of secrets with the tag
+ *   {@code property.source}.</dd>
+ *   <dt>{@code avaulgit.decryption.failures}</dt>
+ *   <dd>Counter for failed decryptions with the tag {@code cause}
+ *   ({@code WrongSignatureException}, {@code InvalidVaultTextException} or
+ *   {@code GeneralSecurityException}).</dd>
+ *   <dt>{@code avaulgit.decryption.cache}</dt>
+ *   <dd>Counter for lookups of plaintexts with the tag {@code result}
+ *   ({@code hit} or {@code miss}).</dd>
+ *   <dt>{@code avaulgit.decryption.cache.hit.ratio}</dt>
+ *   <dd>Ratio of lookups that are cache hits.</dd>
+ *   <dt>{@code avaulgit.secrets.decrypted}</dt>
+ *   <dd>Counter for decryptions of secrets. A secret that is decrypted again
+ *   (e.g. by another application context of the JVM) is counted again.</dd>
+ *   <dt>{@code avaulgit.secrets.decrypted.size}</dt>
+ *   <dd>Counter for the bytes of the decrypted secrets' UTF-8 encoded
+ *   plaintexts.</dd>
+ * </dl>
+ * <p>The timer of a property source is registered when its first secret is
+ * decrypted, even if this happens after the metrics have been bound (e.g. for
+ * placeholders that are resolved later). Closing {@code AvaulgitMetrics},
+ * which Spring does when the bean is destroyed, stops the registration of new
+ * timers.
+ */
+public class AvaulgitMetrics implements MeterBinder, AutoCloseable {
+    private final DecryptionStatistics statistics;
+    private final List<BiConsumer<String, DecryptionStatistics.Durations>> durationsListeners
+        = new CopyOnWriteArrayList<>();
+
+    public AvaulgitMetrics() {
+        this(DecryptionStatistics.GLOBAL);
+    }
+
+    AvaulgitMetrics(
+        DecryptionStatistics statistics
+    ) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void bindTo(
+        MeterRegistry registry
+    ) {
+        BiConsumer<String, DecryptionStatistics.Durations> durationsListener
+            = (propertySourceName, durations) -> bindDurations(
+                registry,
+                propertySourceName,
+                durations);
+        durationsListeners.add(durationsListener);
+        statistics.addDurationsListener(durationsListener);
+        bindFailures(
+            registry,
+            "WrongSignatureException",
+            DecryptionStatistics::wrongSignatures);
+        bindFailures(
+            registry,
+            "InvalidVaultTextException",
+            DecryptionStatistics::invalidVaultTexts);
+        bindFailures(
+            registry,
+            "GeneralSecurityException",
+            DecryptionStatistics::otherFailures);
+        bindCacheLookups(registry, "hit", DecryptionStatistics::cacheHits);
+        bindCacheLookups(registry, "miss", DecryptionStatistics::cacheMisses);
+        Gauge.builder(
+                "avaulgit.decryption.cache.hit.ratio",
+                statistics,
+                DecryptionStatistics::cacheHitRatio)
+            .description("Ratio of plaintext lookups that are cache hits")
+            .register(registry);
+        FunctionCounter.builder(
+                "avaulgit.secrets.decrypted",
+                statistics,
+                DecryptionStatistics::decryptedSecrets)
+            .description("Decryptions of secrets")
+            .register(registry);
+        FunctionCounter.builder(
+                "avaulgit.secrets.decrypted.size",
+                statistics,
+                DecryptionStatistics::decryptedBytes)
+            .description("Size of the decrypted secrets' plaintexts")
+            .baseUnit(BaseUnits.BYTES)
+            .register(registry);
+    }
+
+    @Override
+    public void close() {
+        durationsListeners.forEach(statistics::removeDurationsListener);
+        durationsListeners.clear();
+    }
+
+    private void bindDurations(
+        MeterRegistry registry,
+        String propertySourceName,
+        DecryptionStatistics.Durations durations
+    ) {
+        if (!registry.isClosed())
+            FunctionTimer.builder(
+                    "avaulgit.decryption",
+                    durations,
+                    DecryptionStatistics.Durations::count,
+                    DecryptionStatistics.Durations::totalNanos,
+                    NANOSECONDS)
+                .description("Decryption of secrets")
+                .tag("property.source", propertySourceName)
+                .register(registry);
+    }
+
+    private void bindFailures(
+        MeterRegistry registry,
+        String cause,
+        ToDoubleFunction<DecryptionStatistics> count
+    ) {
+        FunctionCounter.builder(
+                "avaulgit.decryption.failures",
+                statistics,
+                count)
+            .description("Failed decryptions of secrets")
+            .tag("cause", cause)
+            .register(registry);
+    }
+
+    private void bindCacheLookups(
+        MeterRegistry registry,
+        String result,
+        ToDoubleFunction<DecryptionStatistics> count
+    ) {
+        FunctionCounter.builder(
+                "avaulgit.decryption.cache",
+                statistics,
+                count)
+            .description("Lookups of plaintexts")
+            .tag("result", result)
+            .register(registry);
+    }
+}
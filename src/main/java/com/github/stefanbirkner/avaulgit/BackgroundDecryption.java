@@ -0,0 +1,98 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Decrypts secrets on background threads. This way the expensive key
+ * derivation overlaps with the startup of the application context and only
+ * the first read of a property waits for the decryption of its value. Each
+ * distinct vault text is decrypted only once.
+ */
+class BackgroundDecryption {
+    private final Map<String, CompletableFuture<String>> plaintexts = new HashMap<>();
+    private final Supplier<Decryptor> decryptorFactory;
+    private final DecryptionStatistics statistics;
+    private Decryptor decryptor;
+    private ExecutorService executor;
+
+    /**
+     * Creates a {@code BackgroundDecryption}.
+     * @param decryptorFactory creates the {@link Decryptor} when the first
+     *                         secret is decrypted. It is called by the thread
+     *                         that calls
+     *                         {@link #start(String, String, Secret)}.
+     * @param statistics records the decryptions and the cache lookups.
+     */
+    BackgroundDecryption(
+        Supplier<Decryptor> decryptorFactory,
+        DecryptionStatistics statistics
+    ) {
+        this.decryptorFactory = decryptorFactory;
+        this.statistics = statistics;
+    }
+
+    PendingPlaintext start(
+        String propertySourceName,
+        String name,
+        Secret secret
+    ) {
+        var plaintext = plaintexts.get(secret.value());
+        if (plaintext == null) {
+            plaintext = startDecryption(propertySourceName, secret.value());
+            plaintexts.put(secret.value(), plaintext);
+        }
+        else
+            statistics.cacheHit();
+        return new PendingPlaintext(name, plaintext);
+    }
+
+    /**
+     * Lets the background threads terminate after all decryptions that have
+     * been started are finished.
+     */
+    void shutdown() {
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    private CompletableFuture<String> startDecryption(
+        String propertySourceName,
+        String vaultText
+    ) {
+        if (decryptor == null) {
+            decryptor = decryptorFactory.get();
+            executor = createExecutor();
+        }
+        var decryptor = this.decryptor;
+        // Register the property source now, so that it is known to metrics
+        // that are bound before the decryption is finished.
+        statistics.durations(propertySourceName);
+        return CompletableFuture.supplyAsync(
+            () -> decrypt(decryptor, propertySourceName, vaultText),
+            executor);
+    }
+
+    private ExecutorService createExecutor() {
+        var threadFactory = new CustomizableThreadFactory("avaulgit-decryption-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            threadFactory);
+    }
+
+    private String decrypt(
+        Decryptor decryptor,
+        String propertySourceName,
+        String vaultText
+    ) {
+        try {
+            return statistics.decrypt(decryptor, propertySourceName, vaultText);
+        } catch (GeneralSecurityException | InvalidVaultTextException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * {@link Decryptor} that looks up plaintexts in the JVM-wide
+ * {@link DecryptionCache} before it decrypts a vault text.
+ */
+class CachingDecryptor extends Decryptor {
+    private final DecryptionCache cache;
+    private final String passwordFingerprint;
+
+    CachingDecryptor(
+        String vaultPassword,
+        KeyDerivationAgentClient agent,
+        DecryptionCache cache
+    ) {
+        super(vaultPassword, agent);
+        this.cache = cache;
+        this.passwordFingerprint = cache.fingerprint(vaultPassword);
+    }
+
+    @Override
+    String getKnownPlaintext(
+        String vaultTextWithHeader
+    ) {
+        return cache.get(passwordFingerprint, vaultTextWithHeader);
+    }
+
+    @Override
+    String decrypt(
+        String vaultTextWithHeader
+    ) throws GeneralSecurityException, InvalidVaultTextException {
+        var plaintext = cache.get(passwordFingerprint, vaultTextWithHeader);
+        if (plaintext == null) {
+            plaintext = super.decrypt(vaultTextWithHeader);
+            cache.put(passwordFingerprint, vaultTextWithHeader, plaintext);
+        }
+        return plaintext;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.util.*;
+import org.springframework.core.env.*;
+
+/**
+ * Replaces a property source with secrets. It contains the plaintexts of the
+ * secrets and the other properties of the original property source. A
+ * plaintext that is still decrypted in the background is provided as soon as
+ * its decryption is finished.
+ * <p>If the property source has a {@link SecretAccessTracker}, then it records
+ * which secrets are read.
+ */
+class DecryptedPropertySource extends MapPropertySource {
+    private final SecretAccessTracker secretAccessTracker;
+
+    DecryptedPropertySource(
+        String name,
+        Map<String, Object> source
+    ) {
+        this(name, source, null);
+    }
+
+    DecryptedPropertySource(
+        String name,
+        Map<String, Object> source,
+        SecretAccessTracker secretAccessTracker
+    ) {
+        super(name, source);
+        this.secretAccessTracker = secretAccessTracker;
+    }
+
+    /**
+     * Returns the tracker that records which secrets are read.
+     * @return the tracker or {@code null} if access to secrets is not
+     * tracked.
+     */
+    SecretAccessTracker getSecretAccessTracker() {
+        return secretAccessTracker;
+    }
+
+    @Override
+    public Object getProperty(
+        String name
+    ) {
+        if (secretAccessTracker != null)
+            secretAccessTracker.recordAccess(name);
+        var property = super.getProperty(name);
+        if (property instanceof PendingPlaintext pendingPlaintext)
+            return pendingPlaintext.get();
+        else
+            return property;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Plaintexts of vault texts that are shared by all environments of the JVM.
+ * Test suites start many application contexts with the same secrets and the
+ * cache avoids decrypting them again and again.
+ * <p>The plaintexts are stored by vault text and by a fingerprint of the vault
+ * password, so that a vault text is never decrypted with the wrong password.
+ * The fingerprint is salted with a random value for each JVM.
+ * <p>{@link VaultProcessor} only uses the cache if the property
+ * {@code vault.jvm-wide-cache} is {@code true}, which
+ * {@link DecryptionCacheContextCustomizerFactory} sets for tests.
+ */
+class DecryptionCache {
+    static final DecryptionCache GLOBAL = new DecryptionCache();
+    private final Map<Key, String> plaintexts = new ConcurrentHashMap<>();
+    private final byte[] fingerprintSalt = new byte[16];
+
+    DecryptionCache() {
+        new SecureRandom().nextBytes(fingerprintSalt);
+    }
+
+    String get(
+        String passwordFingerprint,
+        String vaultText
+    ) {
+        return plaintexts.get(new Key(passwordFingerprint, vaultText));
+    }
+
+    void put(
+        String passwordFingerprint,
+        String vaultText,
+        String plaintext
+    ) {
+        plaintexts.put(new Key(passwordFingerprint, vaultText), plaintext);
+    }
+
+    String fingerprint(
+        String vaultPassword
+    ) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fingerprintSalt);
+            return HexFormat.of().formatHex(digest.digest(vaultPassword.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(
+                "SHA-256 must be supported by every Java platform.",
+                e);
+        }
+    }
+
+    private record Key(
+        String passwordFingerprint,
+        String vaultText
+    ) {
+    }
+}
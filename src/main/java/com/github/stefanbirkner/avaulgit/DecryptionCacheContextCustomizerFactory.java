@@ -0,0 +1,62 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.util.*;
+import org.springframework.context.*;
+import org.springframework.core.env.*;
+import org.springframework.test.context.*;
+
+/**
+ * Enables the JVM-wide {@link DecryptionCache} for tests that use Spring's
+ * TestContext framework. Test suites start many application contexts with
+ * the same secrets and without the cache each context decrypts them again.
+ * <p>The property {@code vault.jvm-wide-cache} is set to {@code true} in the
+ * environment of each test's application context. It has the lowest
+ * precedence, so that tests can still disable the cache, and it does not
+ * affect any other application of the JVM.
+ * <p>Spring's TestContext framework picks up this factory from
+ * {@code META-INF/spring.factories}. It is ignored if {@code spring-test} is
+ * not on the classpath.
+ */
+public class DecryptionCacheContextCustomizerFactory
+    implements ContextCustomizerFactory
+{
+    @Override
+    public ContextCustomizer createContextCustomizer(
+        Class<?> testClass,
+        List<ContextConfigurationAttributes> configAttributes
+    ) {
+        return new DecryptionCacheContextCustomizer();
+    }
+
+    /**
+     * Adds the property source with {@code vault.jvm-wide-cache=true}. All
+     * instances are equal, so that they don't prevent Spring from reusing
+     * application contexts.
+     */
+    private static class DecryptionCacheContextCustomizer
+        implements ContextCustomizer
+    {
+        @Override
+        public void customizeContext(
+            ConfigurableApplicationContext context,
+            MergedContextConfiguration mergedConfig
+        ) {
+            context.getEnvironment().getPropertySources().addLast(
+                new MapPropertySource(
+                    "Avaulgit test properties",
+                    Map.of("vault.jvm-wide-cache", "true")));
+        }
+
+        @Override
+        public boolean equals(
+            Object other
+        ) {
+            return other != null && other.getClass() == getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return getClass().hashCode();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Decrypts each distinct vault text only once. The same secret is often
+ * stored in several property sources (e.g. {@code application.yml} and
+ * {@code application-prod.yml}) and its decryption is expensive.
+ */
+class DecryptionMemo {
+    private final Map<String, String> plaintexts = new HashMap<>();
+    private final Supplier<Decryptor> decryptorFactory;
+    private final DecryptionStatistics statistics;
+    private Decryptor decryptor;
+
+    /**
+     * Creates a {@code DecryptionMemo}.
+     * @param decryptorFactory creates the {@link Decryptor} when the first
+     *                         vault text is decrypted.
+     * @param statistics records the decryptions and the cache lookups.
+     */
+    DecryptionMemo(
+        Supplier<Decryptor> decryptorFactory,
+        DecryptionStatistics statistics
+    ) {
+        this.decryptorFactory = decryptorFactory;
+        this.statistics = statistics;
+    }
+
+    String decrypt(
+        String propertySourceName,
+        String vaultText
+    ) throws GeneralSecurityException, InvalidVaultTextException {
+        var plaintext = plaintexts.get(vaultText);
+        if (plaintext == null) {
+            plaintext = statistics.decrypt(
+                getDecryptor(),
+                propertySourceName,
+                vaultText);
+            plaintexts.put(vaultText, plaintext);
+        }
+        else
+            statistics.cacheHit();
+        return plaintext;
+    }
+
+    private Decryptor getDecryptor() {
+        if (decryptor == null)
+            decryptor = decryptorFactory.get();
+        return decryptor;
+    }
+}
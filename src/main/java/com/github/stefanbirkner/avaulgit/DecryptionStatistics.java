@@ -0,0 +1,186 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.unmodifiableMap;
+
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Collects statistics about the decryption of secrets. They are published by
+ * {@link AvaulgitMetrics}.
+ * <p>Secrets are decrypted before the application context exists. Therefore,
+ * the statistics are collected by the JVM-wide instance {@link #GLOBAL}.
+ */
+class DecryptionStatistics {
+    static final DecryptionStatistics GLOBAL = new DecryptionStatistics();
+    private final ConcurrentMap<String, Durations> durations = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, Durations>> durationsListeners
+        = new CopyOnWriteArrayList<>();
+    private final LongAdder wrongSignatures = new LongAdder();
+    private final LongAdder invalidVaultTexts = new LongAdder();
+    private final LongAdder otherFailures = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder decryptedSecrets = new LongAdder();
+    private final LongAdder decryptedBytes = new LongAdder();
+
+    /**
+     * Decrypts the vault text and records the duration of the decryption for
+     * the property source or the cause of the failure. A plaintext that the
+     * decryptor already knows (e.g. from the JVM-wide
+     * {@link DecryptionCache}) is counted as cache hit and not as decryption.
+     * Otherwise the lookup is counted as cache miss.
+     * @param decryptor the decryptor that decrypts the vault text.
+     * @param propertySourceName the name of the property source that contains
+     *                           the vault text.
+     * @param vaultText the vault text.
+     * @return the plaintext.
+     * @throws GeneralSecurityException if {@code decryptor} throws it.
+     * @throws InvalidVaultTextException if {@code decryptor} throws it.
+     */
+    String decrypt(
+        Decryptor decryptor,
+        String propertySourceName,
+        String vaultText
+    ) throws GeneralSecurityException, InvalidVaultTextException {
+        var knownPlaintext = decryptor.getKnownPlaintext(vaultText);
+        if (knownPlaintext != null) {
+            cacheHits.increment();
+            return knownPlaintext;
+        }
+        cacheMisses.increment();
+        var durationsForPropertySource = durations(propertySourceName);
+        var start = System.nanoTime();
+        try {
+            var plaintext = decryptor.decrypt(vaultText);
+            durationsForPropertySource.record(System.nanoTime() - start);
+            decryptedSecrets.increment();
+            decryptedBytes.add(plaintext.getBytes(UTF_8).length);
+            return plaintext;
+        } catch (WrongSignatureException e) {
+            wrongSignatures.increment();
+            throw e;
+        } catch (InvalidVaultTextException e) {
+            invalidVaultTexts.increment();
+            throw e;
+        } catch (GeneralSecurityException e) {
+            otherFailures.increment();
+            throw e;
+        }
+    }
+
+    Durations durations(
+        String propertySourceName
+    ) {
+        var existingDurations = durations.get(propertySourceName);
+        if (existingDurations != null)
+            return existingDurations;
+        var newDurations = new Durations();
+        existingDurations = durations.putIfAbsent(propertySourceName, newDurations);
+        if (existingDurations != null)
+            return existingDurations;
+        durationsListeners.forEach(
+            listener -> listener.accept(propertySourceName, newDurations));
+        return newDurations;
+    }
+
+    Map<String, Durations> durationsByPropertySource() {
+        return unmodifiableMap(durations);
+    }
+
+    /**
+     * Adds a listener that is called for the durations of each property source
+     * that is known already and of each property source whose secrets are
+     * decrypted later. A listener may be called twice for the same property
+     * source if the property source is added while the listener is added.
+     * @param listener the listener.
+     */
+    void addDurationsListener(
+        BiConsumer<String, Durations> listener
+    ) {
+        durationsListeners.add(listener);
+        durations.forEach(listener);
+    }
+
+    void removeDurationsListener(
+        BiConsumer<String, Durations> listener
+    ) {
+        durationsListeners.remove(listener);
+    }
+
+    void cacheHit() {
+        cacheHits.increment();
+    }
+
+    long wrongSignatures() {
+        return wrongSignatures.sum();
+    }
+
+    long invalidVaultTexts() {
+        return invalidVaultTexts.sum();
+    }
+
+    long otherFailures() {
+        return otherFailures.sum();
+    }
+
+    long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    double cacheHitRatio() {
+        var hits = cacheHits();
+        var lookups = hits + cacheMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the number of successful decryptions. Secrets that are
+     * decrypted again (e.g. by another application context) are counted
+     * again.
+     * @return the number of decryptions since the statistics were created.
+     */
+    long decryptedSecrets() {
+        return decryptedSecrets.sum();
+    }
+
+    /**
+     * Returns the bytes of all plaintexts that have been decrypted. Secrets
+     * that are decrypted again are counted again.
+     * @return the bytes of the UTF-8 encoded plaintexts.
+     */
+    long decryptedBytes() {
+        return decryptedBytes.sum();
+    }
+
+    /**
+     * Number and total time of the decryptions for a single property source.
+     */
+    static class Durations {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(
+            long nanos
+        ) {
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double totalNanos() {
+            return totalNanos.sum();
+        }
+    }
+}
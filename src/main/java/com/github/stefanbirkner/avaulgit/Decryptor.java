@@ -16,9 +16,11 @@ import javax.crypto.spec.*;
  * Vault</a>.
  */
 class Decryptor {
-    private static final HexFormat HEX_PARSER = HexFormat.of();
+    static final int KEY_LENGTH = 32 + 32 + 16;
     private static final String SUPPORTED_HEADER = "$ANSIBLE_VAULT;1.1;AES256\n";
     private final String vaultPassword;
+    private final KeyDerivationAgentClient agent;
+    private volatile boolean agentHoldsVaultPassword = true;
 
     /**
      * Creates a {@code Decryptor} that decrypts secrets which are encrypted
@@ -28,8 +30,62 @@ class Decryptor {
      */
     Decryptor(
         String vaultPassword
+    ) {
+        this(vaultPassword, null);
+    }
+
+    /**
+     * Creates a {@code Decryptor} that decrypts secrets which are encrypted
+     * with the {@code vaultPassword}. It asks the {@link KeyDerivationAgent}
+     * for the keys first and only derives them itself if the agent is not
+     * available or provides a key for a different password. It stops asking
+     * the agent once the agent provided a key for a different password.
+     * @param vaultPassword the password that was used for encrypting the
+     *                      secrets.
+     * @param agent the client of the agent or {@code null} if no agent is
+     *              used.
+     */
+    Decryptor(
+        String vaultPassword,
+        KeyDerivationAgentClient agent
     ) {
         this.vaultPassword = vaultPassword;
+        this.agent = agent;
+    }
+
+    /**
+     * Derives the key for decrypting a vault text like Ansible Vault does.
+     * @param vaultPassword the password that was used for encrypting the
+     *                      vault text.
+     * @param salt the vault text's salt.
+     * @return the key for the cipher, the key for the HMAC and the IV.
+     * @throws InvalidKeySpecException if the key cannot be derived.
+     * @throws NoSuchAlgorithmException if PBKDF2 is not supported.
+     */
+    static byte[] deriveKey(
+        String vaultPassword,
+        byte[] salt
+    ) throws InvalidKeySpecException, NoSuchAlgorithmException {
+        var keyFactory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        var secretKey = keyFactory.generateSecret(new PBEKeySpec(
+            vaultPassword.toCharArray(),
+            salt,
+            10_000,
+            KEY_LENGTH * 8));
+        return secretKey.getEncoded();
+    }
+
+    /**
+     * Returns the plaintext of a vault text if it is known without decrypting
+     * the vault text.
+     * @param vaultTextWithHeader the vault text.
+     * @return the plaintext or {@code null} if the vault text must be
+     * decrypted.
+     */
+    String getKnownPlaintext(
+        String vaultTextWithHeader
+    ) {
+        return null;
     }
 
     String decrypt(
@@ -38,15 +94,11 @@ class Decryptor {
         validateNotBlank(vaultTextWithHeader);
         validateHeader(vaultTextWithHeader);
 
-        var vaultText = vaultTextWithHeader
-            .substring(SUPPORTED_HEADER.length())
-            .replace("\n", "")
-            .replace("\r", "");
-        var unhexlifiedVaultText = unhexlifyToString(vaultText);
-        var parts = split(unhexlifiedVaultText);
-        var salt = unhexlify(parts[0]);
-        var hmac = unhexlify(parts[1]);
-        var ciphertext = unhexlify(parts[2]);
+        var parts = VaultTextDecoder.decode(
+            vaultTextWithHeader.substring(SUPPORTED_HEADER.length()));
+        var salt = parts[0];
+        var hmac = parts[1];
+        var ciphertext = parts[2];
         return getPlaintext(salt, hmac, ciphertext);
     }
 
@@ -66,46 +118,40 @@ class Decryptor {
                     + SUPPORTED_HEADER.trim() + " is supported.");
     }
 
-    private String[] split(
-        String unhexlifiedVaultText
-    ) throws InvalidVaultTextException {
-        var parts = unhexlifiedVaultText.split("\n");
-        if (parts.length == 3)
-            return parts;
-        else
-            throw new InvalidVaultTextException(
-                "The vault text is not valid because it has "
-                    + parts.length
-                    + " parts instead of 3 (salt, HMAC, cipher text).");
-    }
-
-    private String unhexlifyToString(
-        String hexlifiedData
-    ) throws InvalidVaultTextException {
-        var raw = unhexlify(hexlifiedData);
-        return new String(raw, UTF_8);
-    }
-
-    // Java port of "unhexlify" of
-    // https://docs.python.org/3/library/binascii.html
-    private byte[] unhexlify(
-        String hexlifiedData
-    ) throws InvalidVaultTextException {
+    private String getPlaintext(
+        byte[] salt,
+        byte[] expectedHmac,
+        byte[] ciphertext
+    ) throws GeneralSecurityException, WrongSignatureException {
+        var keyFromAgent = agent == null || !agentHoldsVaultPassword
+            ? null
+            : agent.deriveKey(salt);
+        if (keyFromAgent == null)
+            return getPlaintextWithKey(
+                deriveKey(vaultPassword, salt),
+                expectedHmac,
+                ciphertext);
         try {
-            return HEX_PARSER.parseHex(hexlifiedData);
-        } catch (IllegalArgumentException e) {
-            throw new InvalidVaultTextException(
-                "The vault text is corrupted.",
-                e);
+            return getPlaintextWithKey(keyFromAgent, expectedHmac, ciphertext);
+        } catch (WrongSignatureException e) {
+            // The agent may hold a different password. We derive the key
+            // ourselves in order to be sure.
         }
+        var plaintext = getPlaintextWithKey(
+            deriveKey(vaultPassword, salt),
+            expectedHmac,
+            ciphertext);
+        // Our own key is right, hence the agent holds a different password
+        // and asking it again would derive every key twice.
+        agentHoldsVaultPassword = false;
+        return plaintext;
     }
 
-    private String getPlaintext(
-        byte[] salt,
+    private String getPlaintextWithKey(
+        byte[] secretKey,
         byte[] expectedHmac,
         byte[] ciphertext
     ) throws GeneralSecurityException, WrongSignatureException {
-        var secretKey = getSecretKey(salt);
         var cipherKey = new SecretKeySpec(secretKey, 0, 32, "AES");
         var hmacKey = new SecretKeySpec(secretKey, 32, 32, "AES");
         var iv = new IvParameterSpec(copyOfRange(secretKey, 64, 64 + 16));
@@ -114,18 +160,6 @@ class Decryptor {
         return new String(plaintext, UTF_8);
     }
 
-    private byte[] getSecretKey(
-        byte[] salt
-    ) throws InvalidKeySpecException, NoSuchAlgorithmException {
-        var keyFactory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        var secretKey = keyFactory.generateSecret(new PBEKeySpec(
-            vaultPassword.toCharArray(),
-            salt,
-            10_000,
-            (32 + 32 + 16) * 8));
-        return secretKey.getEncoded();
-    }
-
     private byte[] getHmac(
         byte[] ciphertext,
         SecretKeySpec key
@@ -0,0 +1,236 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.attribute.PosixFilePermission.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.apache.commons.logging.*;
+
+/**
+ * A long-living process that holds the vault password and derives the keys
+ * for decrypting secrets. It caches the keys, so that short-living
+ * applications on the same host with the same vault password don't have to
+ * derive the same keys again and again. It is similar to ssh-agent.
+ * <p>Start the agent with the path of its socket and provide the vault
+ * password as the first line of its standard input.
+ * <pre>
+ * echo "$VAULT_PASSWORD" | java -cp avaulgit.jar:... \
+ *   com.github.stefanbirkner.avaulgit.KeyDerivationAgent /run/user/1000/avaulgit.sock
+ * </pre>
+ * Applications use the agent if the property {@code vault.agent-socket} is set
+ * to the path of the socket. They still need the vault password, because they
+ * derive the keys themselves if the agent is not available or holds a
+ * different vault password.
+ * <p>Only the owner of the agent may connect to its socket (on file systems
+ * with POSIX permissions). The socket is created in a temporary directory that
+ * only the owner can access. After its permissions have been restricted it is
+ * linked to its path, so that nobody else can connect in between. Linking
+ * fails if the path exists, so the agent never replaces the socket of another
+ * agent that has been started at the same time. The agent logs a warning if
+ * the file system does not support POSIX permissions.
+ */
+public final class KeyDerivationAgent implements Closeable {
+    private static final Log LOG = LogFactory.getLog(KeyDerivationAgent.class);
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+    private final Map<String, byte[]> keys = new ConcurrentHashMap<>();
+    private final HexFormat hexFormat = HexFormat.of();
+    private final String vaultPassword;
+    private final Path socket;
+    private final ServerSocketChannel server;
+
+    private KeyDerivationAgent(
+        String vaultPassword,
+        Path socket,
+        ServerSocketChannel server
+    ) {
+        this.vaultPassword = vaultPassword;
+        this.socket = socket;
+        this.server = server;
+    }
+
+    public static void main(
+        String[] args
+    ) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println(
+                "Usage: java " + KeyDerivationAgent.class.getName() + " <socket>");
+            System.exit(2);
+        }
+        var vaultPassword = new BufferedReader(new InputStreamReader(System.in, UTF_8))
+            .readLine();
+        if (vaultPassword == null) {
+            System.err.println("The vault password is missing on standard input.");
+            System.exit(2);
+        }
+        var agent = start(vaultPassword, Path.of(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(agent::closeQuietly));
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Starts an agent that listens on the socket.
+     * @param vaultPassword the password for deriving the keys.
+     * @param socket the path of the socket. The file must not exist.
+     * @return the running agent.
+     * @throws IOException if the socket cannot be created, e.g. because the
+     * file exists.
+     */
+    static KeyDerivationAgent start(
+        String vaultPassword,
+        Path socket
+    ) throws IOException {
+        var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            bindForOwnerOnly(server, socket);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        var agent = new KeyDerivationAgent(vaultPassword, socket, server);
+        var acceptor = new Thread(agent::acceptConnections, "avaulgit-agent");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return agent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        Files.deleteIfExists(socket);
+    }
+
+    /**
+     * Writes a message that consists of its length and its content.
+     */
+    static void writeMessage(
+        WritableByteChannel channel,
+        byte[] content
+    ) throws IOException {
+        var buffer = ByteBuffer.allocate(Integer.BYTES + content.length);
+        buffer.putInt(content.length).put(content).flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Reads a message that has been written by
+     * {@link #writeMessage(WritableByteChannel, byte[])}.
+     * @return the message's content or {@code null} if the channel has been
+     * closed before the message.
+     */
+    static byte[] readMessage(
+        ReadableByteChannel channel
+    ) throws IOException {
+        var lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        if (!readFully(channel, lengthBuffer))
+            return null;
+        var length = lengthBuffer.flip().getInt();
+        if (length < 0 || length > MAX_MESSAGE_LENGTH)
+            throw new IOException("Invalid message length " + length + ".");
+        var content = ByteBuffer.allocate(length);
+        if (!readFully(channel, content))
+            throw new EOFException();
+        return content.array();
+    }
+
+    private static boolean readFully(
+        ReadableByteChannel channel,
+        ByteBuffer buffer
+    ) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                if (buffer.position() == 0)
+                    return false;
+                else
+                    throw new EOFException();
+        return true;
+    }
+
+    private static void bindForOwnerOnly(
+        ServerSocketChannel server,
+        Path socket
+    ) throws IOException {
+        Path directory;
+        try {
+            directory = Files.createTempDirectory(
+                socket.toAbsolutePath().getParent(),
+                ".avaulgit-agent-",
+                PosixFilePermissions.asFileAttribute(
+                    EnumSet.of(OWNER_READ, OWNER_WRITE, OWNER_EXECUTE)));
+        } catch (UnsupportedOperationException e) {
+            LOG.warn(
+                "Everybody who can access " + socket + " can connect to the"
+                    + " agent, because the file system does not support"
+                    + " POSIX permissions.");
+            server.bind(UnixDomainSocketAddress.of(socket));
+            return;
+        }
+        var temporarySocket = directory.resolve("agent.sock");
+        try {
+            server.bind(UnixDomainSocketAddress.of(temporarySocket));
+            Files.setPosixFilePermissions(
+                temporarySocket,
+                EnumSet.of(OWNER_READ, OWNER_WRITE));
+            // Unlike a move, a link never replaces an existing file.
+            Files.createLink(socket, temporarySocket);
+        } finally {
+            Files.deleteIfExists(temporarySocket);
+            Files.delete(directory);
+        }
+    }
+
+    private void acceptConnections() {
+        while (server.isOpen())
+            try {
+                var channel = server.accept();
+                var handler = new Thread(() -> handle(channel), "avaulgit-agent-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // The agent has been closed or the client gave up.
+            }
+    }
+
+    private void handle(
+        SocketChannel channel
+    ) {
+        try (channel) {
+            byte[] salt;
+            while ((salt = readMessage(channel)) != null)
+                writeMessage(channel, getKey(salt));
+        } catch (IOException e) {
+            // The client gave up. It derives the key itself.
+        }
+    }
+
+    private byte[] getKey(
+        byte[] salt
+    ) {
+        var key = keys.get(hexFormat.formatHex(salt));
+        if (key == null)
+            try {
+                key = Decryptor.deriveKey(vaultPassword, salt);
+                keys.put(hexFormat.formatHex(salt), key);
+            } catch (GeneralSecurityException e) {
+                // The client derives the key itself.
+                return new byte[0];
+            }
+        return key;
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // The JVM is shutting down anyway.
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.channels.SelectionKey.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.time.*;
+
+/**
+ * Asks a {@link KeyDerivationAgent} for the keys that are needed for
+ * decrypting secrets.
+ */
+class KeyDerivationAgentClient {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+    private final UnixDomainSocketAddress address;
+    private final Duration timeout;
+    private volatile boolean agentIsAvailable = true;
+
+    KeyDerivationAgentClient(
+        Path socket
+    ) {
+        this(socket, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a client that gives up on an agent that doesn't answer within
+     * the {@code timeout}.
+     * @param socket the path of the agent's socket.
+     * @param timeout the maximal time for connecting to the agent and
+     *                receiving a key.
+     */
+    KeyDerivationAgentClient(
+        Path socket,
+        Duration timeout
+    ) {
+        this.address = UnixDomainSocketAddress.of(socket);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Asks the agent for the key.
+     * @param salt the vault text's salt.
+     * @return the key or {@code null} if the agent is not available, does not
+     * answer in time or cannot derive the key. The client does not ask an
+     * agent again after it was not available once.
+     */
+    byte[] deriveKey(
+        byte[] salt
+    ) {
+        if (!agentIsAvailable)
+            return null;
+        try (var channel = ChannelWithDeadline.connect(address, timeout)) {
+            KeyDerivationAgent.writeMessage(channel, salt);
+            var key = KeyDerivationAgent.readMessage(channel);
+            return key != null && key.length == Decryptor.KEY_LENGTH ? key : null;
+        } catch (IOException e) {
+            agentIsAvailable = false;
+            return null;
+        }
+    }
+
+    /**
+     * A non-blocking {@link SocketChannel} whose reads and writes wait for the
+     * channel like a blocking channel, but throw a
+     * {@link SocketTimeoutException} after the deadline.
+     */
+    private static class ChannelWithDeadline implements ByteChannel {
+        private final SocketChannel channel;
+        private final Selector selector;
+        private final SelectionKey key;
+        private final long deadline;
+
+        private ChannelWithDeadline(
+            SocketChannel channel,
+            Selector selector,
+            long deadline
+        ) throws IOException {
+            this.channel = channel;
+            this.selector = selector;
+            this.deadline = deadline;
+            channel.configureBlocking(false);
+            this.key = channel.register(selector, 0);
+        }
+
+        static ChannelWithDeadline connect(
+            SocketAddress address,
+            Duration timeout
+        ) throws IOException {
+            var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                var channelWithDeadline = new ChannelWithDeadline(
+                    channel,
+                    Selector.open(),
+                    System.nanoTime() + timeout.toNanos());
+                channelWithDeadline.connect(address);
+                return channelWithDeadline;
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private void connect(
+            SocketAddress address
+        ) throws IOException {
+            if (!channel.connect(address))
+                while (!channel.finishConnect())
+                    await(OP_CONNECT);
+        }
+
+        @Override
+        public int read(
+            ByteBuffer buffer
+        ) throws IOException {
+            int numberOfBytes;
+            while ((numberOfBytes = channel.read(buffer)) == 0 && buffer.hasRemaining())
+                await(OP_READ);
+            return numberOfBytes;
+        }
+
+        @Override
+        public int write(
+            ByteBuffer buffer
+        ) throws IOException {
+            int numberOfBytes;
+            while ((numberOfBytes = channel.write(buffer)) == 0 && buffer.hasRemaining())
+                await(OP_WRITE);
+            return numberOfBytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (selector) {
+                channel.close();
+            }
+        }
+
+        private void await(
+            int operation
+        ) throws IOException {
+            var remainingMillis = Duration.ofNanos(deadline - System.nanoTime())
+                .toMillis();
+            // select(0) would wait forever.
+            if (remainingMillis <= 0)
+                throw new SocketTimeoutException("The agent did not answer in time.");
+            key.interestOps(operation);
+            selector.select(remainingMillis);
+            selector.selectedKeys().clear();
+        }
+    }
+}
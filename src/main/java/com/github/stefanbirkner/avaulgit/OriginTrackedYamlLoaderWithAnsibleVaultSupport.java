@@ -1,7 +1,6 @@
 package com.github.stefanbirkner.avaulgit;
 
 import java.util.*;
-import java.util.regex.*;
 import org.springframework.beans.factory.config.*;
 import org.springframework.boot.origin.*;
 import org.springframework.boot.origin.TextResourceOrigin.*;
@@ -9,8 +8,6 @@ import org.springframework.core.io.*;
 import org.yaml.snakeyaml.*;
 import org.yaml.snakeyaml.constructor.*;
 import org.yaml.snakeyaml.nodes.*;
-import org.yaml.snakeyaml.representer.*;
-import org.yaml.snakeyaml.resolver.*;
 
 /**
  * Merely a copy of org.springframework.boot.env.OriginTrackedYamlLoader with a
@@ -28,24 +25,8 @@ class OriginTrackedYamlLoaderWithAnsibleVaultSupport extends YamlProcessor {
 
     @Override
     protected Yaml createYaml() {
-        var loaderOptions = new LoaderOptions();
-        loaderOptions.setAllowDuplicateKeys(false);
-        loaderOptions.setMaxAliasesForCollections(Integer.MAX_VALUE);
-        loaderOptions.setAllowRecursiveKeys(true);
-        loaderOptions.setCodePointLimit(Integer.MAX_VALUE);
-        return createYaml(loaderOptions);
-    }
-
-    private Yaml createYaml(
-        LoaderOptions loaderOptions
-    ) {
-        var dumperOptions = new DumperOptions();
-        return new Yaml(
-            new OriginTrackingConstructor(loaderOptions),
-            new Representer(dumperOptions),
-            dumperOptions,
-            loaderOptions,
-            new NoTimestampResolver());
+        return YamlFactory.createYaml(
+            new OriginTrackingConstructor(YamlFactory.loaderOptions()));
     }
 
     List<Map<String, Object>> load() {
@@ -88,30 +69,15 @@ class OriginTrackedYamlLoaderWithAnsibleVaultSupport extends YamlProcessor {
         }
     }
 
-    /**
-     * {@link Resolver} that limits {@link Tag#TIMESTAMP} tags.
-     */
-    private static final class NoTimestampResolver extends Resolver {
-
-        @Override
-        public void addImplicitResolver(
-            Tag tag,
-            Pattern regexp,
-            String first,
-            int limit
-        ) {
-            if (tag != Tag.TIMESTAMP)
-                super.addImplicitResolver(tag, regexp, first, limit);
-        }
-    }
-
     /**
      * {@link Constructor} that tracks property origins. It is merely a copy of
      * org.springframework.boot.env.OriginTrackedYamlLoader.OriginTrackingConstructor
      * with a tiny in its constructor that adds support for Ansible Vault
      * encrypted secrets.
+     * <p>It is package-private so that benchmarks can create a {@link Yaml}
+     * with the same constructor.
      */
-    private class OriginTrackingConstructor extends SafeConstructor {
+    class OriginTrackingConstructor extends SafeConstructor {
 
         OriginTrackingConstructor(
             LoaderOptions loadingConfig
@@ -0,0 +1,25 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.util.concurrent.*;
+
+/**
+ * The plaintext of a property whose secret is decrypted by
+ * {@link BackgroundDecryption}.
+ */
+record PendingPlaintext(
+    String name,
+    CompletableFuture<String> plaintext
+) {
+    /**
+     * Returns the plaintext and waits for the decryption if necessary.
+     * @return the plaintext of the secret.
+     * @throws RuntimeException if the secret cannot be decrypted.
+     */
+    String get() {
+        try {
+            return plaintext.join();
+        } catch (CompletionException e) {
+            throw VaultProcessor.decryptionFailure(name, e.getCause());
+        }
+    }
+}
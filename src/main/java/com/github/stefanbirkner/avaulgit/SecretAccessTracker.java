@@ -0,0 +1,77 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import org.springframework.core.env.*;
+
+/**
+ * Records which secrets of a {@link DecryptedPropertySource} are read.
+ * <p>Each secret has a bit in a bitset that is set when the secret is read
+ * for the first time. Reading a secret neither locks nor allocates memory.
+ * The tracker also remembers where the secrets have been defined, so that
+ * unused secrets can be reported with their origin.
+ */
+class SecretAccessTracker {
+    private final String[] descriptions;
+    private final Map<String, Integer> indexes;
+    private final AtomicLongArray accessedSecrets;
+
+    /**
+     * Creates a tracker for the secrets of a property source.
+     * @param propertySource the original property source with the secrets.
+     * @param secretNames the names of the properties whose values are
+     *                    secrets.
+     */
+    SecretAccessTracker(
+        PropertySource<?> propertySource,
+        List<String> secretNames
+    ) {
+        this.descriptions = new String[secretNames.size()];
+        var indexes = new HashMap<String, Integer>();
+        for (var i = 0; i < descriptions.length; ++i) {
+            descriptions[i] = VaultProcessor.describeProperty(
+                propertySource,
+                secretNames.get(i));
+            indexes.put(secretNames.get(i), i);
+        }
+        this.indexes = indexes;
+        this.accessedSecrets = new AtomicLongArray((descriptions.length + 63) / 64);
+    }
+
+    /**
+     * Records that a property has been read. Properties that are not secrets
+     * are ignored.
+     * @param name the property's name.
+     */
+    void recordAccess(
+        String name
+    ) {
+        var index = indexes.get(name);
+        if (index == null)
+            return;
+        var word = index >>> 6;
+        var bit = 1L << index;
+        var bits = accessedSecrets.get(word);
+        // Once the bit is set we only read the word, so that frequently read
+        // secrets don't cause writes to a shared cache line.
+        while ((bits & bit) == 0) {
+            var witness = accessedSecrets.compareAndExchange(word, bits, bits | bit);
+            if (witness == bits)
+                return;
+            bits = witness;
+        }
+    }
+
+    /**
+     * Returns the secrets that have not been read.
+     * @return a description of each unused secret with the name of the
+     * property, the property source and the origin if it is known.
+     */
+    List<String> getUnusedSecrets() {
+        var unusedSecrets = new ArrayList<String>();
+        for (var i = 0; i < descriptions.length; ++i)
+            if ((accessedSecrets.get(i >>> 6) & 1L << i) == 0)
+                unusedSecrets.add(descriptions[i]);
+        return unusedSecrets;
+    }
+}
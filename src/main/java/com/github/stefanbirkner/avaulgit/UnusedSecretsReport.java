@@ -0,0 +1,40 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.util.*;
+import org.apache.commons.logging.*;
+import org.springframework.context.*;
+import org.springframework.context.event.*;
+
+/**
+ * Logs the secrets that have not been read while the application context was
+ * running. The report is created when the context is closed.
+ */
+class UnusedSecretsReport implements ApplicationListener<ContextClosedEvent> {
+    private static final Log LOG = LogFactory.getLog(UnusedSecretsReport.class);
+    private final List<SecretAccessTracker> trackers = new ArrayList<>();
+
+    void add(
+        SecretAccessTracker tracker
+    ) {
+        trackers.add(tracker);
+    }
+
+    List<String> getUnusedSecrets() {
+        var unusedSecrets = new ArrayList<String>();
+        for (var tracker : trackers)
+            unusedSecrets.addAll(tracker.getUnusedSecrets());
+        return unusedSecrets;
+    }
+
+    @Override
+    public void onApplicationEvent(
+        ContextClosedEvent event
+    ) {
+        var unusedSecrets = getUnusedSecrets();
+        if (!unusedSecrets.isEmpty())
+            LOG.warn(
+                "The following secrets have not been read and may be removed:"
+                    + System.lineSeparator()
+                    + String.join(System.lineSeparator(), unusedSecrets));
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.springframework.core.env.*;
+
+/**
+ * {@link PropertySource} that decrypts vault texts in placeholders. A
+ * placeholder contains the vault text on a single line. The header and the
+ * hexlified text are separated by a space and the lines of the hexlified text
+ * are concatenated, e.g.
+ * <pre>
+ * ${vault($ANSIBLE_VAULT;1.1;AES256 3337663036323635383932613632...)}
+ * </pre>
+ * Such placeholders can be used in all property sources, e.g. environment
+ * variables or command-line arguments. A vault text is decrypted when the
+ * placeholder is resolved for the first time. The plaintext is reused for
+ * all other placeholders with the same vault text.
+ * <p>The placeholder does not use a colon like {@code ${vault:...}} because
+ * Spring interprets everything after a colon as the default value of a
+ * placeholder.
+ */
+class VaultPlaceholderPropertySource extends PropertySource<Object> {
+    static final String NAME = "vault placeholders";
+    private static final String PREFIX = "vault(";
+    private static final String SUFFIX = ")";
+    private static final String HEADER = "$ANSIBLE_VAULT;1.1;AES256";
+    private final Map<String, String> plaintexts = new ConcurrentHashMap<>();
+    private final Supplier<Decryptor> decryptorFactory;
+    private final DecryptionStatistics statistics;
+    private volatile Decryptor decryptor;
+
+    /**
+     * Creates a {@code VaultPlaceholderPropertySource}.
+     * @param decryptorFactory creates the {@link Decryptor} when the first
+     *                         placeholder is resolved.
+     * @param statistics records the decryptions and the cache lookups.
+     */
+    VaultPlaceholderPropertySource(
+        Supplier<Decryptor> decryptorFactory,
+        DecryptionStatistics statistics
+    ) {
+        super(NAME, new Object());
+        this.decryptorFactory = decryptorFactory;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Object getProperty(
+        String name
+    ) {
+        if (name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+            return getPlaintext(
+                name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        else
+            return null;
+    }
+
+    private String getPlaintext(
+        String compactVaultText
+    ) {
+        var plaintext = plaintexts.get(compactVaultText);
+        if (plaintext == null) {
+            plaintext = decrypt(compactVaultText);
+            plaintexts.put(compactVaultText, plaintext);
+        }
+        else
+            statistics.cacheHit();
+        return plaintext;
+    }
+
+    private String decrypt(
+        String compactVaultText
+    ) {
+        try {
+            return statistics.decrypt(
+                getDecryptor(),
+                NAME,
+                toVaultText(compactVaultText));
+        } catch (WrongSignatureException e) {
+            throw new RuntimeException(
+                "Cannot decrypt vault placeholder. Either the vault password"
+                    + " is wrong or the vault text is corrupt.",
+                e);
+        } catch (GeneralSecurityException | InvalidVaultTextException e) {
+            throw new RuntimeException(
+                "Cannot decrypt vault placeholder.",
+                e);
+        }
+    }
+
+    // Creates the multi-line vault text that is understood by Decryptor.
+    private String toVaultText(
+        String compactVaultText
+    ) {
+        var text = compactVaultText.strip();
+        if (text.startsWith(HEADER))
+            return HEADER
+                + "\n"
+                + text.substring(HEADER.length()).replaceAll("\\s", "");
+        else
+            return text;
+    }
+
+    private Decryptor getDecryptor() {
+        if (decryptor == null)
+            decryptor = decryptorFactory.get();
+        return decryptor;
+    }
+}
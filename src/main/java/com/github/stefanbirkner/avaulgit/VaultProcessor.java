@@ -2,65 +2,301 @@ package com.github.stefanbirkner.avaulgit;
 
 import static java.util.Objects.requireNonNull;
 
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.util.*;
+import java.util.function.Supplier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.boot.origin.OriginLookup;
 import org.springframework.boot.env.EnvironmentPostProcessor;
-import org.springframework.core.env.MapPropertySource;
 
 /**
  * Decrypt's properties that have been encrypted with Ansible Vault.
+ * <p>By default all secrets are decrypted before
+ * {@link #postProcessEnvironment(ConfigurableEnvironment, SpringApplication)}
+ * returns. If the property {@code vault.async-decryption} is {@code true},
+ * then the secrets are decrypted in the background and reading a property
+ * waits for the decryption of its value.
+ * <p>If the property {@code vault.jvm-wide-cache} is {@code true}, then the
+ * plaintexts are cached for all environments of the JVM.
+ * {@link DecryptionCacheContextCustomizerFactory} sets it for the application
+ * contexts of Spring's TestContext framework.
+ * <p>Vault texts in placeholders like {@code ${vault(...)}} are decrypted by
+ * {@link VaultPlaceholderPropertySource} when they are resolved.
+ * <p>Before the secrets are decrypted the vault password is verified with a
+ * single secret. If the password is wrong, then the processor fails with an
+ * error that lists all secrets and does not derive keys for the other
+ * secrets.
+ * <p>If the property {@code vault.track-secret-access} is {@code true}, then
+ * the decrypted property sources record which secrets are read and the
+ * secrets that have not been read are logged when the application context is
+ * closed.
  */
 public class VaultProcessor implements EnvironmentPostProcessor {
+    private final DecryptionStatistics statistics;
+    private final DecryptionCache cache;
+
+    public VaultProcessor() {
+        this(DecryptionStatistics.GLOBAL, DecryptionCache.GLOBAL);
+    }
+
+    VaultProcessor(
+        DecryptionStatistics statistics,
+        DecryptionCache cache
+    ) {
+        this.statistics = statistics;
+        this.cache = cache;
+    }
+
     @Override
     public void postProcessEnvironment(
         ConfigurableEnvironment environment,
         SpringApplication application
     ) {
-        for (var propertySource : getEnumerablePropertySources(environment)) {
-            decryptProperties(environment, propertySource);
+        Supplier<Decryptor> decryptorFactory = () -> createDecryptor(environment);
+        addVaultPlaceholderPropertySource(environment, decryptorFactory);
+        var unusedSecretsReport = isSecretAccessTrackingEnabled(environment)
+            ? new UnusedSecretsReport()
+            : null;
+        if (isAsyncDecryptionEnabled(environment)) {
+            var backgroundDecryption = new BackgroundDecryption(
+                decryptorFactory,
+                statistics);
+            try {
+                decryptProperties(
+                    environment,
+                    backgroundDecryption::start,
+                    unusedSecretsReport);
+            } finally {
+                backgroundDecryption.shutdown();
+            }
+        } else {
+            var memo = new DecryptionMemo(decryptorFactory, statistics);
+            decryptProperties(
+                environment,
+                (propertySourceName, name, secret) -> decrypt(
+                    memo,
+                    propertySourceName,
+                    name,
+                    secret),
+                unusedSecretsReport);
+        }
+        if (unusedSecretsReport != null && application != null)
+            application.addListeners(unusedSecretsReport);
+    }
+
+    static RuntimeException decryptionFailure(
+        String name,
+        Throwable cause
+    ) {
+        if (cause instanceof WrongSignatureException)
+            return new RuntimeException(
+                "Cannot decrypt property '" + name + "'. Either the vault"
+                    + " password is wrong or the property's value is"
+                    + " corrupt.",
+                cause);
+        else
+            return new RuntimeException(
+                "Cannot decrypt property '" + name + "'.",
+                cause);
+    }
+
+    /**
+     * Describes a property for error messages and reports.
+     * @param propertySource the property source that contains the property.
+     * @param name the property's name.
+     * @return the name of the property and the property source and the
+     * property's origin if it is known.
+     */
+    static String describeProperty(
+        PropertySource<?> propertySource,
+        String name
+    ) {
+        var description = "'" + name + "' of '" + propertySource.getName() + "'";
+        var origin = OriginLookup.getOrigin(propertySource, name);
+        if (origin == null)
+            return description;
+        else
+            return description + " (" + origin + ")";
+    }
+
+    private void addVaultPlaceholderPropertySource(
+        ConfigurableEnvironment environment,
+        Supplier<Decryptor> decryptorFactory
+    ) {
+        var propertySources = environment.getPropertySources();
+        if (!propertySources.contains(VaultPlaceholderPropertySource.NAME))
+            propertySources.addLast(new VaultPlaceholderPropertySource(
+                decryptorFactory,
+                statistics));
+    }
+
+    private boolean isAsyncDecryptionEnabled(
+        ConfigurableEnvironment environment
+    ) {
+        return environment.getProperty(
+            "vault.async-decryption",
+            Boolean.class,
+            false);
+    }
+
+    private boolean isSecretAccessTrackingEnabled(
+        ConfigurableEnvironment environment
+    ) {
+        return environment.getProperty(
+            "vault.track-secret-access",
+            Boolean.class,
+            false);
+    }
+
+    private void decryptProperties(
+        ConfigurableEnvironment environment,
+        Plaintexts plaintexts,
+        UnusedSecretsReport unusedSecretsReport
+    ) {
+        var propertySources = getEnumerablePropertySources(environment);
+        var plaintextsAfterVerification = verifyPassword(
+            propertySources,
+            plaintexts);
+        for (var propertySource : propertySources) {
+            decryptProperties(
+                environment,
+                propertySource,
+                plaintextsAfterVerification,
+                unusedSecretsReport);
         }
     }
 
     private void decryptProperties(
         ConfigurableEnvironment environment,
-        EnumerablePropertySource<?> propertySource
+        EnumerablePropertySource<?> propertySource,
+        Plaintexts plaintexts,
+        UnusedSecretsReport unusedSecretsReport
     ) {
-        var atLeastOnePropertyWasASecret = false;
-        Decryptor decryptor = null;
+        var secretNames = new ArrayList<String>();
         var decryptedProperties = new HashMap<String, Object>();
         for (var name : propertySource.getPropertyNames()) {
             var property = propertySource.getProperty(name);
             if (property instanceof Secret secret) {
-                try {
-                    if (decryptor == null)
-                        decryptor = createDecryptor(environment);
-                    var plaintext = decryptor.decrypt(secret.value());
-                    decryptedProperties.put(name, plaintext);
-                    atLeastOnePropertyWasASecret = true;
-                } catch (WrongSignatureException e) {
-                    throw new RuntimeException(
-                        "Cannot decrypt property '" + name + "'. Either the"
-                            + " vault password is wrong or the property's"
-                            + " value is corrupt.",
-                        e);
-                } catch (GeneralSecurityException | InvalidVaultTextException e) {
-                    throw new RuntimeException(
-                        "Cannot decrypt property '" + name + "'.",
-                        e);
-                }
+                decryptedProperties.put(
+                    name,
+                    plaintexts.get(propertySource.getName(), name, secret));
+                secretNames.add(name);
             }
             else
                 decryptedProperties.put(name, property);
         }
-        if (atLeastOnePropertyWasASecret)
+        if (!secretNames.isEmpty())
             environment.getPropertySources().replace(
                 propertySource.getName(),
-                new MapPropertySource(
+                new DecryptedPropertySource(
                     propertySource.getName() + " decrypted",
-                    decryptedProperties));
+                    decryptedProperties,
+                    createSecretAccessTracker(
+                        propertySource,
+                        secretNames,
+                        unusedSecretsReport)));
+    }
+
+    // Decrypts a single secret before all other secrets are decrypted, so that
+    // a wrong password is detected after a single key derivation. Vault texts
+    // that are corrupt are skipped because they don't tell whether the
+    // password is right. Returns plaintexts that reuse the results of the
+    // verification, so that they are not looked up and counted again.
+    private Plaintexts verifyPassword(
+        List<EnumerablePropertySource<?>> propertySources,
+        Plaintexts plaintexts
+    ) {
+        var secretProperties = findSecretProperties(propertySources);
+        var verifiedPlaintexts = new HashMap<PropertyKey, Object>();
+        for (var secretProperty : secretProperties) {
+            var key = new PropertyKey(
+                secretProperty.propertySource().getName(),
+                secretProperty.name());
+            try {
+                var plaintext = plaintexts.get(
+                    key.propertySourceName(),
+                    key.name(),
+                    secretProperty.secret());
+                verifiedPlaintexts.put(key, plaintext);
+                if (plaintext instanceof PendingPlaintext pendingPlaintext)
+                    pendingPlaintext.get();
+                break;
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof WrongSignatureException)
+                    throw wrongPassword(secretProperty, secretProperties, e.getCause());
+                else if (!(e.getCause() instanceof InvalidVaultTextException))
+                    // The failure is reported when the secret is decrypted.
+                    break;
+            }
+        }
+        return (propertySourceName, name, secret) -> {
+            var plaintext = verifiedPlaintexts.get(
+                new PropertyKey(propertySourceName, name));
+            return plaintext == null
+                ? plaintexts.get(propertySourceName, name, secret)
+                : plaintext;
+        };
+    }
+
+    private List<SecretProperty> findSecretProperties(
+        List<EnumerablePropertySource<?>> propertySources
+    ) {
+        var secretProperties = new ArrayList<SecretProperty>();
+        for (var propertySource : propertySources)
+            for (var name : propertySource.getPropertyNames())
+                if (propertySource.getProperty(name) instanceof Secret secret)
+                    secretProperties.add(
+                        new SecretProperty(propertySource, name, secret));
+        return secretProperties;
+    }
+
+    private RuntimeException wrongPassword(
+        SecretProperty verifiedProperty,
+        List<SecretProperty> secretProperties,
+        Throwable cause
+    ) {
+        var message = new StringBuilder()
+            .append("Cannot decrypt secrets because the vault password is")
+            .append(" wrong or the value of property '")
+            .append(verifiedProperty.name())
+            .append("' is corrupt. Secrets of the following properties are")
+            .append(" affected:");
+        for (var secretProperty : secretProperties)
+            message.append(System.lineSeparator())
+                .append("  ")
+                .append(describeProperty(
+                    secretProperty.propertySource(),
+                    secretProperty.name()));
+        return new RuntimeException(message.toString(), cause);
+    }
+
+    private SecretAccessTracker createSecretAccessTracker(
+        EnumerablePropertySource<?> propertySource,
+        List<String> secretNames,
+        UnusedSecretsReport unusedSecretsReport
+    ) {
+        if (unusedSecretsReport == null)
+            return null;
+        var tracker = new SecretAccessTracker(propertySource, secretNames);
+        unusedSecretsReport.add(tracker);
+        return tracker;
+    }
+
+    private String decrypt(
+        DecryptionMemo memo,
+        String propertySourceName,
+        String name,
+        Secret secret
+    ) {
+        try {
+            return memo.decrypt(propertySourceName, secret.value());
+        } catch (GeneralSecurityException | InvalidVaultTextException e) {
+            throw decryptionFailure(name, e);
+        }
     }
 
     private Decryptor createDecryptor(
@@ -70,15 +306,55 @@ public class VaultProcessor implements EnvironmentPostProcessor {
             environment.getProperty("vault.password", String.class),
             "Cannot decrypt secrets because property 'vault.password' is not"
                 + " set.");
-        return new Decryptor(password);
+        var agentSocket = environment.getProperty("vault.agent-socket");
+        var agent = agentSocket == null
+            ? null
+            : new KeyDerivationAgentClient(Path.of(agentSocket));
+        if (isJvmWideCacheEnabled(environment))
+            return new CachingDecryptor(password, agent, cache);
+        else
+            return new Decryptor(password, agent);
+    }
+
+    private boolean isJvmWideCacheEnabled(
+        ConfigurableEnvironment environment
+    ) {
+        return environment.getProperty("vault.jvm-wide-cache", Boolean.class, false);
     }
 
-    private List<EnumerablePropertySource> getEnumerablePropertySources(
+    private List<EnumerablePropertySource<?>> getEnumerablePropertySources(
         ConfigurableEnvironment environment
     ) {
         return environment.getPropertySources().stream()
             .filter(EnumerablePropertySource.class::isInstance)
-            .map(EnumerablePropertySource.class::cast)
+            // Already decrypted property sources don't contain secrets and
+            // reading all their properties would mark their secrets as used.
+            .filter(propertySource -> !(propertySource instanceof DecryptedPropertySource))
+            .<EnumerablePropertySource<?>>map(EnumerablePropertySource.class::cast)
             .toList();
     }
+
+    private record SecretProperty(
+        PropertySource<?> propertySource,
+        String name,
+        Secret secret
+    ) {
+    }
+
+    private record PropertyKey(
+        String propertySourceName,
+        String name
+    ) {
+    }
+
+    /**
+     * Provides the plaintext of a secret or a {@link PendingPlaintext} if the
+     * secret is decrypted in the background.
+     */
+    private interface Plaintexts {
+        Object get(
+            String propertySourceName,
+            String name,
+            Secret secret);
+    }
 }
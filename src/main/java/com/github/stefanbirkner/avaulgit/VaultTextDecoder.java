@@ -0,0 +1,231 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.copyOfRange;
+
+import java.util.*;
+
+/**
+ * Decodes the salt, the HMAC and the ciphertext of a vault text.
+ * <p>Ansible Vault hexlifies the salt, the HMAC and the ciphertext, joins
+ * them with line breaks, hexlifies the result again and splits it into lines.
+ * The decoder strips the line breaks and unhexlifies both levels in a single
+ * pass without creating intermediate strings. It rejects the same corrupt
+ * vault texts as unhexlifying each level with {@link HexFormat#parseHex} and
+ * reports the same causes. The inner level used to be decoded as UTF-8, so a
+ * sequence of non-ASCII bytes may be a single character. For a part with
+ * non-ASCII bytes the decoder therefore reports the cause of the former
+ * decoding.
+ */
+class VaultTextDecoder {
+    private static final int NUMBER_OF_PARTS = 3;
+
+    private VaultTextDecoder() {
+    }
+
+    /**
+     * Decodes the salt, the HMAC and the ciphertext.
+     * @param hexlifiedVaultText the vault text without header.
+     * @return salt, HMAC and ciphertext.
+     * @throws InvalidVaultTextException if the vault text is corrupt.
+     */
+    static byte[][] decode(
+        String hexlifiedVaultText
+    ) throws InvalidVaultTextException {
+        var numberOfDigits = countDigits(hexlifiedVaultText);
+        if (numberOfDigits % 2 != 0)
+            throw corrupted(new IllegalArgumentException(
+                "string length not even: " + numberOfDigits));
+
+        var parts = new Parts(hexlifiedVaultText, numberOfDigits / 4);
+        var highNibble = -1;
+        for (var i = 0; i < hexlifiedVaultText.length(); ++i) {
+            var c = hexlifiedVaultText.charAt(i);
+            if (isLineBreak(c))
+                continue;
+            var nibble = fromHexDigit(c);
+            if (highNibble < 0)
+                highNibble = nibble;
+            else {
+                parts.add(highNibble << 4 | nibble);
+                highNibble = -1;
+            }
+        }
+        return parts.decode();
+    }
+
+    private static int countDigits(
+        String hexlifiedVaultText
+    ) {
+        var numberOfDigits = 0;
+        for (var i = 0; i < hexlifiedVaultText.length(); ++i)
+            if (!isLineBreak(hexlifiedVaultText.charAt(i)))
+                ++numberOfDigits;
+        return numberOfDigits;
+    }
+
+    private static boolean isLineBreak(
+        char c
+    ) {
+        return c == '\n' || c == '\r';
+    }
+
+    private static int fromHexDigit(
+        char c
+    ) throws InvalidVaultTextException {
+        try {
+            return HexFormat.fromHexDigit(c);
+        } catch (NumberFormatException e) {
+            throw corrupted(e);
+        }
+    }
+
+    // Unhexlifies the outer level, decodes it as UTF-8, splits it into parts
+    // and unhexlifies each part like the former decoder. It is only used for
+    // reporting the cause if a part is corrupt.
+    private static void decodeInTwoPasses(
+        String hexlifiedVaultText
+    ) throws InvalidVaultTextException {
+        try {
+            var innerLevel = HexFormat.of().parseHex(
+                hexlifiedVaultText.replace("\n", "").replace("\r", ""));
+            for (var part : new String(innerLevel, UTF_8).split("\n"))
+                HexFormat.of().parseHex(part);
+        } catch (IllegalArgumentException e) {
+            throw corrupted(e);
+        }
+    }
+
+    private static InvalidVaultTextException corrupted(
+        IllegalArgumentException cause
+    ) {
+        return new InvalidVaultTextException(
+            "The vault text is corrupted.",
+            cause);
+    }
+
+    /**
+     * The inner level of the vault text: salt, HMAC and ciphertext separated
+     * by line breaks. All parts are unhexlified into a single buffer.
+     */
+    private static class Parts {
+        private final List<Part> parts = new ArrayList<>();
+        private final String hexlifiedVaultText;
+        private final byte[] buffer;
+        private int length = 0;
+        private Part current = new Part(0);
+
+        Parts(
+            String hexlifiedVaultText,
+            int capacity
+        ) {
+            this.hexlifiedVaultText = hexlifiedVaultText;
+            this.buffer = new byte[capacity];
+        }
+
+        void add(
+            int c
+        ) {
+            if (c == '\n') {
+                parts.add(current);
+                current = new Part(length);
+            } else if (c < 0x80 && HexFormat.isHexDigit(c)) {
+                var nibble = HexFormat.fromHexDigit(c);
+                if (current.add(nibble))
+                    buffer[length++] = (byte) (current.highNibble << 4 | nibble);
+            } else if (c < 0x80)
+                current.addInvalidDigit(c);
+            else
+                current.addNonAsciiByte();
+        }
+
+        byte[][] decode() throws InvalidVaultTextException {
+            parts.add(current);
+            var numberOfParts = getNumberOfParts();
+            if (numberOfParts != NUMBER_OF_PARTS)
+                throw new InvalidVaultTextException(
+                    "The vault text is not valid because it has "
+                        + numberOfParts
+                        + " parts instead of 3 (salt, HMAC, cipher text).");
+            var decoded = new byte[NUMBER_OF_PARTS][];
+            for (var i = 0; i < NUMBER_OF_PARTS; ++i)
+                decoded[i] = decode(parts.get(i));
+            return decoded;
+        }
+
+        // Same number of parts as String.split("\n"), which drops trailing
+        // empty parts.
+        private int getNumberOfParts() {
+            var numberOfParts = parts.size();
+            if (numberOfParts > 1)
+                while (numberOfParts > 0 && parts.get(numberOfParts - 1).isEmpty())
+                    --numberOfParts;
+            return numberOfParts;
+        }
+
+        private byte[] decode(
+            Part part
+        ) throws InvalidVaultTextException {
+            // A part with non-ASCII bytes is always corrupt, but the number of
+            // digits and the invalid digit depend on the UTF-8 decoding.
+            if (part.containsNonAsciiBytes)
+                decodeInTwoPasses(hexlifiedVaultText);
+            if (part.numberOfDigits % 2 != 0)
+                throw corrupted(new IllegalArgumentException(
+                    "string length not even: " + part.numberOfDigits));
+            if (part.firstInvalidDigit >= 0)
+                try {
+                    HexFormat.fromHexDigit(part.firstInvalidDigit);
+                } catch (NumberFormatException e) {
+                    throw corrupted(e);
+                }
+            return copyOfRange(
+                buffer,
+                part.start,
+                part.start + part.numberOfDigits / 2);
+        }
+    }
+
+    private static class Part {
+        final int start;
+        int numberOfDigits = 0;
+        int highNibble = -1;
+        int firstInvalidDigit = -1;
+        boolean containsNonAsciiBytes = false;
+
+        Part(
+            int start
+        ) {
+            this.start = start;
+        }
+
+        // Returns true if the nibble completes a byte.
+        boolean add(
+            int nibble
+        ) {
+            ++numberOfDigits;
+            if (numberOfDigits % 2 == 1) {
+                highNibble = nibble;
+                return false;
+            } else
+                return true;
+        }
+
+        void addInvalidDigit(
+            int c
+        ) {
+            ++numberOfDigits;
+            if (firstInvalidDigit < 0)
+                firstInvalidDigit = c;
+        }
+
+        void addNonAsciiByte() {
+            addInvalidDigit('\uFFFD');
+            containsNonAsciiBytes = true;
+        }
+
+        boolean isEmpty() {
+            return numberOfDigits == 0;
+        }
+    }
+}
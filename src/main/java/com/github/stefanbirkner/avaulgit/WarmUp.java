@@ -0,0 +1,61 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.*;
+import org.springframework.core.env.*;
+import org.springframework.core.io.*;
+
+/**
+ * Runs Avaulgit's startup path once: it loads a YAML document with an
+ * encrypted secret and decrypts the secret. Afterwards the classes of
+ * Avaulgit, SnakeYAML and the JCA providers that are needed for decryption
+ * are loaded and initialized.
+ * <p>Use it for the training run of Class Data Sharing (CDS) or the JDK's
+ * AOT cache so that this work is not done when your application starts, e.g.
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=application.jsa \
+ *   -cp your-application.jar com.github.stefanbirkner.avaulgit.WarmUp
+ * </pre>
+ * You can also call {@link #run()} from your own training code.
+ */
+public final class WarmUp {
+    private static final String VAULT_PASSWORD = "the-secret-vault-key";
+    private static final String YAML = """
+        warm-up:
+          secret: !vault |
+            $ANSIBLE_VAULT;1.1;AES256
+            33376630363236353839326136323337616663396463656632623265363339343537653937616139
+            6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+            30323763636135383930323538356537326133613736633737343361373035626239653738393562
+            3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+            3833
+        """;
+
+    private WarmUp() {
+    }
+
+    public static void main(
+        String[] args
+    ) {
+        run();
+    }
+
+    /**
+     * Loads a YAML document with an encrypted secret and decrypts the secret.
+     */
+    public static void run() {
+        var environment = new StandardEnvironment();
+        var propertySources = environment.getPropertySources();
+        propertySources.addFirst(new MapPropertySource(
+            "warm-up vault password",
+            Map.of("vault.password", VAULT_PASSWORD)));
+        var resource = new ByteArrayResource(YAML.getBytes(UTF_8));
+        new YamlPropertySourceLoaderWithAnsibleVaultSupport()
+            .load("warm-up", resource)
+            .forEach(propertySources::addLast);
+        new VaultProcessor(new DecryptionStatistics(), new DecryptionCache())
+            .postProcessEnvironment(environment, null);
+        environment.getProperty("warm-up.secret");
+    }
+}
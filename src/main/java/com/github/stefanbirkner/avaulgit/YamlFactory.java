@@ -0,0 +1,74 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.util.regex.*;
+import org.yaml.snakeyaml.*;
+import org.yaml.snakeyaml.constructor.*;
+import org.yaml.snakeyaml.nodes.*;
+import org.yaml.snakeyaml.representer.*;
+import org.yaml.snakeyaml.resolver.*;
+
+/**
+ * Creates the {@link Yaml} instances that load Spring Boot's configuration
+ * files.
+ * <p>The options and the resolver are created only once and shared by all
+ * instances, because they are only read while a document is loaded. This is
+ * safe for concurrent loaders as long as nobody modifies them, so they are
+ * never handed out except for {@link #loaderOptions()}, which is needed for
+ * creating the constructor. The constructor and the representer are modified
+ * by {@link Yaml} and therefore created for each instance.
+ */
+final class YamlFactory {
+    private static final LoaderOptions LOADER_OPTIONS = createLoaderOptions();
+    private static final DumperOptions DUMPER_OPTIONS = new DumperOptions();
+    private static final Resolver RESOLVER = new NoTimestampResolver();
+
+    private YamlFactory() {
+    }
+
+    /**
+     * Returns the options that must be used for creating the constructor
+     * that is passed to {@link #createYaml(BaseConstructor)}. They must not
+     * be modified.
+     * @return the shared options.
+     */
+    static LoaderOptions loaderOptions() {
+        return LOADER_OPTIONS;
+    }
+
+    static Yaml createYaml(
+        BaseConstructor constructor
+    ) {
+        return new Yaml(
+            constructor,
+            new Representer(DUMPER_OPTIONS),
+            DUMPER_OPTIONS,
+            LOADER_OPTIONS,
+            RESOLVER);
+    }
+
+    private static LoaderOptions createLoaderOptions() {
+        var loaderOptions = new LoaderOptions();
+        loaderOptions.setAllowDuplicateKeys(false);
+        loaderOptions.setMaxAliasesForCollections(Integer.MAX_VALUE);
+        loaderOptions.setAllowRecursiveKeys(true);
+        loaderOptions.setCodePointLimit(Integer.MAX_VALUE);
+        return loaderOptions;
+    }
+
+    /**
+     * {@link Resolver} that limits {@link Tag#TIMESTAMP} tags.
+     */
+    private static final class NoTimestampResolver extends Resolver {
+
+        @Override
+        public void addImplicitResolver(
+            Tag tag,
+            Pattern regexp,
+            String first,
+            int limit
+        ) {
+            if (tag != Tag.TIMESTAMP)
+                super.addImplicitResolver(tag, regexp, first, limit);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.assertj.core.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+import org.springframework.core.env.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class AvaulgitMetricsTest {
+    private static final String VAULT_TEXT = """
+        $ANSIBLE_VAULT;1.1;AES256
+        33376630363236353839326136323337616663396463656632623265363339343537653937616139
+        6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+        30323763636135383930323538356537326133613736633737343361373035626239653738393562
+        3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+        3833
+        """;
+    private final DecryptionStatistics statistics = new DecryptionStatistics();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void decryption_of_secrets_is_timed_by_property_source() {
+        decryptSecrets();
+
+        new AvaulgitMetrics(statistics).bindTo(registry);
+
+        var timer = registry.get("avaulgit.decryption")
+            .tag("property.source", "first properties")
+            .functionTimer();
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.totalTime(NANOSECONDS)).isPositive();
+    }
+
+    @Test
+    void property_source_that_is_decrypted_after_binding_is_timed() {
+        new AvaulgitMetrics(statistics).bindTo(registry);
+
+        decryptSecrets();
+
+        var timer = registry.get("avaulgit.decryption")
+            .tag("property.source", "first properties")
+            .functionTimer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void property_source_that_is_decrypted_after_metrics_are_closed_is_not_timed() {
+        var metrics = new AvaulgitMetrics(statistics);
+        metrics.bindTo(registry);
+
+        metrics.close();
+        decryptSecrets();
+
+        assertThat(registry.find("avaulgit.decryption").functionTimer())
+            .isNull();
+    }
+
+    @Test
+    void cache_hits_and_misses_are_counted() {
+        decryptSecrets();
+
+        new AvaulgitMetrics(statistics).bindTo(registry);
+
+        assertThat(
+            registry.get("avaulgit.decryption.cache")
+                .tag("result", "hit")
+                .functionCounter()
+                .count())
+            .isEqualTo(1);
+        assertThat(
+            registry.get("avaulgit.decryption.cache")
+                .tag("result", "miss")
+                .functionCounter()
+                .count())
+            .isEqualTo(1);
+        assertThat(
+            registry.get("avaulgit.decryption.cache.hit.ratio")
+                .gauge()
+                .value())
+            .isEqualTo(0.5);
+    }
+
+    @Test
+    void plaintext_from_JVM_wide_cache_is_counted_as_cache_hit_and_not_as_decryption() {
+        var cache = new DecryptionCache();
+        cache.put(
+            cache.fingerprint("the-secret-vault-key"),
+            VAULT_TEXT,
+            "original secret");
+        var environment = createEnvironment("my.secret", new Secret(VAULT_TEXT));
+        environment.getPropertySources().addLast(
+            new MapPropertySource(
+                "cache properties",
+                Map.of("vault.jvm-wide-cache", "true")));
+        new VaultProcessor(statistics, cache)
+            .postProcessEnvironment(environment, null);
+
+        new AvaulgitMetrics(statistics).bindTo(registry);
+
+        assertThat(
+            registry.get("avaulgit.decryption.cache")
+                .tag("result", "hit")
+                .functionCounter()
+                .count())
+            .isEqualTo(1);
+        assertThat(
+            registry.get("avaulgit.decryption.cache")
+                .tag("result", "miss")
+                .functionCounter()
+                .count())
+            .isEqualTo(0);
+        assertThat(registry.find("avaulgit.decryption").functionTimer())
+            .isNull();
+        assertThat(
+            registry.get("avaulgit.secrets.decrypted")
+                .functionCounter()
+                .count())
+            .isEqualTo(0);
+    }
+
+    @Test
+    void decryptions_of_secrets_and_their_size_are_counted() {
+        decryptSecrets();
+        decryptSecrets();
+
+        new AvaulgitMetrics(statistics).bindTo(registry);
+
+        assertThat(
+            registry.get("avaulgit.secrets.decrypted")
+                .functionCounter()
+                .count())
+            .isEqualTo(2);
+        assertThat(
+            registry.get("avaulgit.secrets.decrypted.size")
+                .functionCounter()
+                .count())
+            .isEqualTo(2 * "original secret".length());
+    }
+
+    @Test
+    void failures_are_counted_by_cause() {
+        var environment = createEnvironment(
+            "my.secret",
+            new Secret(VAULT_TEXT.replaceFirst("3833", "3933")));
+        assertThatThrownBy(() -> new VaultProcessor(statistics, new DecryptionCache())
+            .postProcessEnvironment(environment, null));
+
+        new AvaulgitMetrics(statistics).bindTo(registry);
+
+        assertThat(
+            registry.get("avaulgit.decryption.failures")
+                .tag("cause", "WrongSignatureException")
+                .functionCounter()
+                .count())
+            .isEqualTo(1);
+        assertThat(
+            registry.get("avaulgit.decryption.failures")
+                .tag("cause", "InvalidVaultTextException")
+                .functionCounter()
+                .count())
+            .isEqualTo(0);
+    }
+
+    private void decryptSecrets() {
+        var environment = createEnvironment("first.secret", new Secret(VAULT_TEXT));
+        environment.getPropertySources().addLast(
+            new MapPropertySource(
+                "second properties",
+                Map.of("second.secret", new Secret(VAULT_TEXT))));
+        new VaultProcessor(statistics, new DecryptionCache())
+            .postProcessEnvironment(environment, null);
+    }
+
+    private StandardEnvironment createEnvironment(
+        String name,
+        Secret secret
+    ) {
+        var environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "first properties",
+                Map.of(
+                    "vault.password",
+                    "the-secret-vault-key",
+                    name,
+                    secret)));
+        return environment;
+    }
+}
@@ -36,9 +36,12 @@ public class AvaulgitTest {
             setProperty("vault.password", "wrong password");
 
             assertThatThrownBy(application::run)
-                .hasMessage("Cannot decrypt property 'database.password'. Either"
-                    + " the vault password is wrong or the property's value is"
-                    + " corrupt.");
+                .hasMessageStartingWith("Cannot decrypt secrets because the"
+                    + " vault password is wrong or the value of property"
+                    + " 'database.password' is corrupt. Secrets of the"
+                    + " following properties are affected:")
+                .hasMessageContaining("'database.password' of 'Config"
+                    + " resource 'class path resource [application.yml]'");
         });
     }
 
@@ -0,0 +1,98 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+import org.springframework.core.env.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class DecryptionCacheTest {
+    private static final String VAULT_TEXT = """
+        $ANSIBLE_VAULT;1.1;AES256
+        33376630363236353839326136323337616663396463656632623265363339343537653937616139
+        6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+        30323763636135383930323538356537326133613736633737343361373035626239653738393562
+        3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+        3833
+        """;
+    private final DecryptionCache cache = new DecryptionCache();
+
+    @Test
+    void plaintext_is_taken_from_cache_by_decryptor_with_same_password() throws Exception {
+        var fingerprint = cache.fingerprint("the-secret-vault-key");
+        cache.put(fingerprint, VAULT_TEXT, "cached plaintext");
+        var decryptor = new CachingDecryptor("the-secret-vault-key", null, cache);
+
+        assertThat(decryptor.decrypt(VAULT_TEXT))
+            .isEqualTo("cached plaintext");
+    }
+
+    @Test
+    void plaintext_is_not_taken_from_cache_by_decryptor_with_different_password() {
+        var fingerprint = cache.fingerprint("the-secret-vault-key");
+        cache.put(fingerprint, VAULT_TEXT, "cached plaintext");
+        var decryptor = new CachingDecryptor("wrong password", null, cache);
+
+        assertThatThrownBy(() -> decryptor.decrypt(VAULT_TEXT))
+            .isInstanceOf(WrongSignatureException.class);
+    }
+
+    @Test
+    void plaintext_of_first_environment_is_reused_by_other_environments_if_cache_is_enabled() {
+        var statistics = new DecryptionStatistics();
+        var processor = new VaultProcessor(statistics, cache);
+        var firstEnvironment = createEnvironmentWithCache();
+        processor.postProcessEnvironment(firstEnvironment, null);
+        firstEnvironment.getProperty("my.secret");
+
+        var secondEnvironment = createEnvironmentWithCache();
+        processor.postProcessEnvironment(secondEnvironment, null);
+
+        assertThat(secondEnvironment.getProperty("my.secret"))
+            .isEqualTo("original secret");
+        assertThat(statistics.decryptedSecrets()).isEqualTo(1);
+    }
+
+    @Test
+    void cache_is_used_if_property_is_set() {
+        var processor = new VaultProcessor(new DecryptionStatistics(), cache);
+
+        processor.postProcessEnvironment(createEnvironmentWithCache(), null);
+
+        assertThat(cache.get(cache.fingerprint("the-secret-vault-key"), VAULT_TEXT))
+            .isEqualTo("original secret");
+    }
+
+    @Test
+    void cache_is_not_used_by_default() {
+        var processor = new VaultProcessor(new DecryptionStatistics(), cache);
+
+        processor.postProcessEnvironment(createEnvironment(), null);
+
+        assertThat(cache.get(cache.fingerprint("the-secret-vault-key"), VAULT_TEXT))
+            .isNull();
+    }
+
+    private StandardEnvironment createEnvironment() {
+        var environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "test properties",
+                Map.of(
+                    "vault.password",
+                    "the-secret-vault-key",
+                    "my.secret",
+                    new Secret(VAULT_TEXT))));
+        return environment;
+    }
+
+    private StandardEnvironment createEnvironmentWithCache() {
+        var environment = createEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource(
+            "cache properties",
+            Map.of("vault.jvm-wide-cache", "true")));
+        return environment;
+    }
+}
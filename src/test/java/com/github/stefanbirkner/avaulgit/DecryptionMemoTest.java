@@ -0,0 +1,76 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.atomic.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class DecryptionMemoTest {
+    private static final String VAULT_TEXT = """
+        $ANSIBLE_VAULT;1.1;AES256
+        33376630363236353839326136323337616663396463656632623265363339343537653937616139
+        6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+        30323763636135383930323538356537326133613736633737343361373035626239653738393562
+        3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+        3833
+        """;
+    private final CountingDecryptor decryptor = new CountingDecryptor();
+    private final DecryptionMemo memo = new DecryptionMemo(
+        () -> decryptor,
+        new DecryptionStatistics());
+
+    @Test
+    void vault_text_is_decrypted_to_its_plaintext() throws Exception {
+        var plaintext = memo.decrypt("test properties", VAULT_TEXT);
+
+        assertThat(plaintext).isEqualTo("original secret");
+    }
+
+    @Test
+    void vault_text_that_occurs_multiple_times_is_decrypted_only_once() throws Exception {
+        memo.decrypt("test properties", VAULT_TEXT);
+        memo.decrypt("test properties", VAULT_TEXT);
+        memo.decrypt("test properties", VAULT_TEXT);
+
+        assertThat(decryptor.numberOfDecryptions).isEqualTo(1);
+    }
+
+    @Test
+    void decryptor_is_created_when_the_first_vault_text_is_decrypted_and_reused_afterwards() throws Exception {
+        var numberOfCreatedDecryptors = new AtomicInteger();
+        var memo = new DecryptionMemo(
+            () -> {
+                numberOfCreatedDecryptors.incrementAndGet();
+                return decryptor;
+            },
+            new DecryptionStatistics());
+        var anotherVaultText = new VaultTextEncryptor("the-secret-vault-key")
+            .encrypt("another secret");
+        assertThat(numberOfCreatedDecryptors).hasValue(0);
+
+        memo.decrypt("test properties", VAULT_TEXT);
+        memo.decrypt("test properties", anotherVaultText);
+
+        assertThat(numberOfCreatedDecryptors).hasValue(1);
+        assertThat(decryptor.numberOfDecryptions).isEqualTo(2);
+    }
+
+    private static class CountingDecryptor extends Decryptor {
+        int numberOfDecryptions = 0;
+
+        CountingDecryptor() {
+            super("the-secret-vault-key");
+        }
+
+        @Override
+        String decrypt(
+            String vaultTextWithHeader
+        ) throws GeneralSecurityException, InvalidVaultTextException {
+            ++numberOfDecryptions;
+            return super.decrypt(vaultTextWithHeader);
+        }
+    }
+}
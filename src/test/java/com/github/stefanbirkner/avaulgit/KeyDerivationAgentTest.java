@@ -0,0 +1,159 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.file.attribute.PosixFilePermission.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.time.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+import org.junit.jupiter.api.io.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class KeyDerivationAgentTest {
+    private static final String VAULT_TEXT = """
+        $ANSIBLE_VAULT;1.1;AES256
+        33376630363236353839326136323337616663396463656632623265363339343537653937616139
+        6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+        30323763636135383930323538356537326133613736633737343361373035626239653738393562
+        3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+        3833
+        """;
+    private static final byte[] SALT = new byte[]{1, 2, 3, 4};
+
+    @TempDir
+    Path directory;
+    private KeyDerivationAgent agent;
+
+    @AfterEach
+    void closeAgent() throws Exception {
+        if (agent != null)
+            agent.close();
+    }
+
+    @Test
+    void agent_provides_the_key_that_is_derived_from_its_password() throws Exception {
+        var socket = directory.resolve("agent.sock");
+        agent = KeyDerivationAgent.start("the-secret-vault-key", socket);
+        var client = new KeyDerivationAgentClient(socket);
+
+        assertThat(client.deriveKey(SALT))
+            .isEqualTo(Decryptor.deriveKey("the-secret-vault-key", SALT));
+    }
+
+    @Test
+    void decryptor_uses_the_key_of_the_agent() throws Exception {
+        var socket = directory.resolve("agent.sock");
+        agent = KeyDerivationAgent.start("the-secret-vault-key", socket);
+        var decryptor = new Decryptor(
+            "the-secret-vault-key",
+            new KeyDerivationAgentClient(socket));
+
+        assertThat(decryptor.decrypt(VAULT_TEXT))
+            .isEqualTo("original secret");
+    }
+
+    @Test
+    void decryptor_derives_the_key_itself_if_the_agent_holds_a_different_password() throws Exception {
+        var socket = directory.resolve("agent.sock");
+        agent = KeyDerivationAgent.start("another password", socket);
+        var decryptor = new Decryptor(
+            "the-secret-vault-key",
+            new KeyDerivationAgentClient(socket));
+
+        assertThat(decryptor.decrypt(VAULT_TEXT))
+            .isEqualTo("original secret");
+    }
+
+    @Test
+    void decryptor_stops_asking_an_agent_that_holds_a_different_password() throws Exception {
+        var socket = directory.resolve("agent.sock");
+        var encryptor = new VaultTextEncryptor("the-secret-vault-key");
+        agent = KeyDerivationAgent.start("another password", socket);
+        var client = new CountingClient(socket);
+        var decryptor = new Decryptor("the-secret-vault-key", client);
+
+        decryptor.decrypt(encryptor.encrypt("first secret"));
+        decryptor.decrypt(encryptor.encrypt("second secret"));
+
+        assertThat(client.numberOfRequests).isEqualTo(1);
+    }
+
+    @Test
+    void decryptor_derives_the_key_itself_if_the_agent_is_not_running() throws Exception {
+        var decryptor = new Decryptor(
+            "the-secret-vault-key",
+            new KeyDerivationAgentClient(directory.resolve("agent.sock")));
+
+        assertThat(decryptor.decrypt(VAULT_TEXT))
+            .isEqualTo("original secret");
+    }
+
+    @Test
+    void decryptor_derives_the_key_itself_if_the_agent_does_not_answer() throws Exception {
+        var socket = directory.resolve("agent.sock");
+        // The server never accepts the connection and therefore never answers.
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            var decryptor = new Decryptor(
+                "the-secret-vault-key",
+                new KeyDerivationAgentClient(socket, Duration.ofMillis(100)));
+
+            assertThat(decryptor.decrypt(VAULT_TEXT))
+                .isEqualTo("original secret");
+        }
+    }
+
+    @Test
+    void only_the_owner_can_access_the_socket() throws Exception {
+        var socket = directory.resolve("agent.sock");
+
+        agent = KeyDerivationAgent.start("the-secret-vault-key", socket);
+        assertThat(Files.getPosixFilePermissions(socket))
+            .containsExactlyInAnyOrder(OWNER_READ, OWNER_WRITE);
+        assertThat(directory.toFile().list())
+            .containsExactly("agent.sock");
+    }
+
+    @Test
+    void agent_does_not_replace_the_socket_of_another_agent() throws Exception {
+        var socket = directory.resolve("agent.sock");
+        agent = KeyDerivationAgent.start("the-secret-vault-key", socket);
+
+        assertThatThrownBy(() -> KeyDerivationAgent.start("another password", socket))
+            .isInstanceOf(FileAlreadyExistsException.class);
+        assertThat(new KeyDerivationAgentClient(socket).deriveKey(SALT))
+            .isEqualTo(Decryptor.deriveKey("the-secret-vault-key", SALT));
+        assertThat(directory.toFile().list())
+            .containsExactly("agent.sock");
+    }
+
+    @Test
+    void socket_is_deleted_when_agent_is_closed() throws Exception {
+        var socket = directory.resolve("agent.sock");
+
+        KeyDerivationAgent.start("the-secret-vault-key", socket).close();
+
+        assertThat(socket).doesNotExist();
+    }
+
+    private static class CountingClient extends KeyDerivationAgentClient {
+        int numberOfRequests = 0;
+
+        CountingClient(
+            Path socket
+        ) {
+            super(socket);
+        }
+
+        @Override
+        byte[] deriveKey(
+            byte[] salt
+        ) {
+            ++numberOfRequests;
+            return super.deriveKey(salt);
+        }
+    }
+}
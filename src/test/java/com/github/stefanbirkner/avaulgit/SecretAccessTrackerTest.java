@@ -0,0 +1,88 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+import org.springframework.boot.env.*;
+import org.springframework.boot.origin.*;
+import org.springframework.boot.origin.TextResourceOrigin.*;
+import org.springframework.core.env.*;
+import org.springframework.core.io.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class SecretAccessTrackerTest {
+    private static final Secret SECRET = new Secret("vault text");
+
+    @Test
+    void secrets_that_have_not_been_read_are_unused() {
+        var tracker = new SecretAccessTracker(
+            new MapPropertySource(
+                "test properties",
+                Map.of("first.secret", SECRET, "second.secret", SECRET)),
+            List.of("first.secret", "second.secret"));
+
+        tracker.recordAccess("first.secret");
+
+        assertThat(tracker.getUnusedSecrets())
+            .containsExactly("'second.secret' of 'test properties'");
+    }
+
+    @Test
+    void unused_secrets_are_reported_with_their_origin() {
+        var tracker = new SecretAccessTracker(
+            new OriginTrackedMapPropertySource(
+                "test properties",
+                Map.of(
+                    "my.secret",
+                    OriginTrackedValue.of(
+                        SECRET,
+                        new TextResourceOrigin(
+                            new ClassPathResource("application.yml"),
+                            new Location(2, 4))))),
+            List.of("my.secret"));
+
+        assertThat(tracker.getUnusedSecrets())
+            .containsExactly(
+                "'my.secret' of 'test properties'"
+                    + " (class path resource [application.yml] - 3:5)");
+    }
+
+    @Test
+    void access_to_each_of_many_secrets_is_tracked() {
+        var names = new ArrayList<String>();
+        var properties = new HashMap<String, Object>();
+        for (var i = 0; i < 200; ++i) {
+            names.add("secret-" + i);
+            properties.put("secret-" + i, SECRET);
+        }
+        var tracker = new SecretAccessTracker(
+            new MapPropertySource("test properties", properties),
+            names);
+
+        for (var i = 0; i < 200; ++i)
+            if (i != 63 && i != 64 && i != 199)
+                tracker.recordAccess("secret-" + i);
+
+        assertThat(tracker.getUnusedSecrets())
+            .containsExactly(
+                "'secret-63' of 'test properties'",
+                "'secret-64' of 'test properties'",
+                "'secret-199' of 'test properties'");
+    }
+
+    @Test
+    void properties_that_are_not_secrets_are_ignored() {
+        var tracker = new SecretAccessTracker(
+            new MapPropertySource(
+                "test properties",
+                Map.of("my.secret", SECRET, "other.property", "value")),
+            List.of("my.secret"));
+
+        tracker.recordAccess("other.property");
+
+        assertThat(tracker.getUnusedSecrets())
+            .containsExactly("'my.secret' of 'test properties'");
+    }
+}
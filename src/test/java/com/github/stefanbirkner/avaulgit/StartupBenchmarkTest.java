@@ -0,0 +1,274 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+import org.junit.jupiter.api.condition.*;
+import org.junit.jupiter.api.io.*;
+import org.springframework.boot.*;
+import org.springframework.core.env.*;
+import org.springframework.core.io.*;
+
+// Measures time and allocated bytes of loading, decrypting and booting with a
+// small and a large synthetic configuration file. It fails if the large file
+// takes disproportionately more time or memory than the small one, because
+// this indicates a part that does not scale linearly. If a baseline is
+// provided then it also fails if a phase became slower or allocates more than
+// the baseline plus the tolerance. The CI build runs it with
+//
+//     mvn test -P startup-benchmark
+//
+// The scaling check does not depend on the speed of the machine. The
+// comparison with a baseline does, therefore it is only done if you run the
+// benchmark with -Dbenchmark.baseline=<file> (and optionally
+// -Dbenchmark.tolerance=0.3). The results are written to
+// target/startup-benchmark.properties and can be used as baseline of a later
+// run on the same machine.
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StartupBenchmarkTest {
+    private static final String VAULT_PASSWORD = "benchmark-vault-password";
+    private static final SyntheticConfiguration SMALL_CONFIGURATION
+        = new SyntheticConfiguration(500, 10, 2, 5);
+    private static final int SCALE = 10;
+    private static final double MAX_SCALING_FACTOR = 1.5;
+    private static final double DEFAULT_TOLERANCE = 0.3;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final Path RESULTS = Path.of(
+        "target", "startup-benchmark.properties");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void startup_time_and_allocations_grow_linearly_with_size_of_configuration() throws Exception {
+        var small = measure("small", SMALL_CONFIGURATION);
+        var large = measure("large", SMALL_CONFIGURATION.scaledBy(SCALE));
+        var results = new Properties();
+        small.addTo(results);
+        large.addTo(results);
+        printResults(small, large);
+        writeResults(results);
+
+        var softly = new SoftAssertions();
+        for (var phase : Phase.values()) {
+            softly.assertThat(large.get(phase).nanos())
+                .as("time of %s with large configuration", phase.label)
+                .isLessThanOrEqualTo(
+                    (long) (small.get(phase).nanos() * SCALE * MAX_SCALING_FACTOR));
+            softly.assertThat(large.get(phase).bytes())
+                .as("allocated bytes of %s with large configuration", phase.label)
+                .isLessThanOrEqualTo(
+                    (long) (small.get(phase).bytes() * SCALE * MAX_SCALING_FACTOR));
+        }
+        compareWithBaseline(softly, results);
+        softly.assertAll();
+    }
+
+    private Results measure(
+        String size,
+        SyntheticConfiguration configuration
+    ) throws Exception {
+        var file = directory.resolve(size + ".yml");
+        Files.writeString(
+            file,
+            configuration.toYaml(new VaultTextEncryptor(VAULT_PASSWORD)));
+        var results = new Results(size, configuration);
+        var resource = new FileSystemResource(file);
+        results.put(Phase.LOAD, measure(() -> load(resource)));
+        var propertySources = load(resource);
+        results.put(Phase.DECRYPT, measure(() -> decrypt(propertySources)));
+        results.put(Phase.BOOT, measure(() -> boot(file)));
+        return results;
+    }
+
+    // Returns the minimal time and the minimal number of allocated bytes of
+    // all rounds.
+    private Measurement measure(
+        Task task
+    ) throws Exception {
+        for (var round = 0; round < WARM_UP_ROUNDS; ++round)
+            task.run();
+        var threadMXBean = (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        var fastestRound = Long.MAX_VALUE;
+        var fewestBytes = Long.MAX_VALUE;
+        for (var round = 0; round < MEASURED_ROUNDS; ++round) {
+            var bytesBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+            var start = System.nanoTime();
+            task.run();
+            fastestRound = Math.min(fastestRound, System.nanoTime() - start);
+            fewestBytes = Math.min(
+                fewestBytes,
+                threadMXBean.getCurrentThreadAllocatedBytes() - bytesBefore);
+        }
+        return new Measurement(fastestRound, fewestBytes);
+    }
+
+    private List<PropertySource<?>> load(
+        Resource resource
+    ) throws IOException {
+        return new YamlPropertySourceLoaderWithAnsibleVaultSupport()
+            .load("synthetic configuration", resource);
+    }
+
+    private void decrypt(
+        List<PropertySource<?>> propertySources
+    ) {
+        var environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "password",
+                Map.of("vault.password", VAULT_PASSWORD)));
+        propertySources.forEach(environment.getPropertySources()::addLast);
+        new VaultProcessor(new DecryptionStatistics(), new DecryptionCache())
+            .postProcessEnvironment(environment, null);
+    }
+
+    private void boot(
+        Path file
+    ) {
+        var application = new SpringApplication(BenchmarkApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setBannerMode(Banner.Mode.OFF);
+        application.setLogStartupInfo(false);
+        application.setDefaultProperties(Map.of(
+            "spring.config.location", file.toUri().toString(),
+            "vault.password", VAULT_PASSWORD));
+        application.run().close();
+    }
+
+    private void printResults(
+        Results small,
+        Results large
+    ) {
+        System.out.printf(
+            "Startup with synthetic configuration (large is %d times small)%n"
+                + "  %-8s %14s %14s %16s %16s%n",
+            SCALE,
+            "phase",
+            "small [ns]",
+            "large [ns]",
+            "small [bytes]",
+            "large [bytes]");
+        for (var phase : Phase.values())
+            System.out.printf(
+                "  %-8s %,14d %,14d %,16d %,16d%n",
+                phase.label,
+                small.get(phase).nanos(),
+                large.get(phase).nanos(),
+                small.get(phase).bytes(),
+                large.get(phase).bytes());
+    }
+
+    private void writeResults(
+        Properties results
+    ) throws IOException {
+        Files.createDirectories(RESULTS.getParent());
+        try (var writer = Files.newBufferedWriter(RESULTS)) {
+            results.store(writer, "Results of StartupBenchmarkTest");
+        }
+    }
+
+    private void compareWithBaseline(
+        SoftAssertions softly,
+        Properties results
+    ) throws IOException {
+        var baselineFile = System.getProperty("benchmark.baseline");
+        if (baselineFile == null)
+            return;
+        var tolerance = Double.parseDouble(System.getProperty(
+            "benchmark.tolerance",
+            Double.toString(DEFAULT_TOLERANCE)));
+        var baseline = new Properties();
+        try (var reader = Files.newBufferedReader(Path.of(baselineFile))) {
+            baseline.load(reader);
+        }
+        for (var key : baseline.stringPropertyNames()) {
+            var current = results.getProperty(key);
+            if (current == null)
+                continue;
+            var limit = (long) (Long.parseLong(baseline.getProperty(key)) * (1 + tolerance));
+            softly.assertThat(Long.parseLong(current))
+                .as("%s compared to baseline", key)
+                .isLessThanOrEqualTo(limit);
+        }
+    }
+
+    private enum Phase {
+        LOAD("load"),
+        DECRYPT("decrypt"),
+        BOOT("boot");
+
+        final String label;
+
+        Phase(
+            String label
+        ) {
+            this.label = label;
+        }
+    }
+
+    private record Measurement(
+        long nanos,
+        long bytes
+    ) {
+    }
+
+    private static class Results {
+        private final Map<Phase, Measurement> measurements = new EnumMap<>(Phase.class);
+        private final String size;
+        private final SyntheticConfiguration configuration;
+
+        Results(
+            String size,
+            SyntheticConfiguration configuration
+        ) {
+            this.size = size;
+            this.configuration = configuration;
+        }
+
+        void put(
+            Phase phase,
+            Measurement measurement
+        ) {
+            measurements.put(phase, measurement);
+        }
+
+        Measurement get(
+            Phase phase
+        ) {
+            return measurements.get(phase);
+        }
+
+        void addTo(
+            Properties properties
+        ) {
+            properties.setProperty(
+                size + ".secrets",
+                Integer.toString(configuration.totalNumberOfSecrets()));
+            measurements.forEach((phase, measurement) -> {
+                properties.setProperty(
+                    size + "." + phase.label + ".nanos",
+                    Long.toString(measurement.nanos()));
+                properties.setProperty(
+                    size + "." + phase.label + ".bytes",
+                    Long.toString(measurement.bytes()));
+            });
+        }
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    static class BenchmarkApplication {
+    }
+}
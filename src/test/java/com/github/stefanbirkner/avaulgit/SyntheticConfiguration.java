@@ -0,0 +1,76 @@
+package com.github.stefanbirkner.avaulgit;
+
+import java.security.GeneralSecurityException;
+
+// Generates a YAML configuration file with the given number of plain
+// properties, !vault secrets, documents and secrets in a list of users (the
+// case that has been fixed in 1.0.2). Keys and secrets are distributed over
+// all documents. The users are part of the first document.
+record SyntheticConfiguration(
+    int numberOfKeys,
+    int numberOfSecrets,
+    int numberOfDocuments,
+    int numberOfSecretsInList
+) {
+    SyntheticConfiguration scaledBy(
+        int factor
+    ) {
+        return new SyntheticConfiguration(
+            numberOfKeys * factor,
+            numberOfSecrets * factor,
+            numberOfDocuments * factor,
+            numberOfSecretsInList * factor);
+    }
+
+    int totalNumberOfSecrets() {
+        return numberOfSecrets + numberOfSecretsInList;
+    }
+
+    String toYaml(
+        VaultTextEncryptor encryptor
+    ) throws GeneralSecurityException {
+        var yaml = new StringBuilder();
+        for (var document = 0; document < numberOfDocuments; ++document) {
+            if (document > 0)
+                yaml.append("---\n");
+            yaml.append("document-").append(document).append(":\n");
+            for (var key = document; key < numberOfKeys; key += numberOfDocuments)
+                yaml.append("  key-").append(key)
+                    .append(": value ").append(key).append('\n');
+            for (var secret = document; secret < numberOfSecrets; secret += numberOfDocuments)
+                appendSecret(
+                    yaml,
+                    "  secret-" + secret,
+                    encryptor.encrypt("secret " + secret));
+            if (document == 0 && numberOfSecretsInList > 0)
+                appendUsers(yaml, encryptor);
+        }
+        return yaml.toString();
+    }
+
+    private void appendUsers(
+        StringBuilder yaml,
+        VaultTextEncryptor encryptor
+    ) throws GeneralSecurityException {
+        yaml.append("users:\n");
+        for (var user = 0; user < numberOfSecretsInList; ++user) {
+            yaml.append("  - username: user-").append(user).append('\n');
+            appendSecret(
+                yaml,
+                "    password",
+                encryptor.encrypt("password " + user));
+        }
+    }
+
+    private void appendSecret(
+        StringBuilder yaml,
+        String indentedKey,
+        String vaultText
+    ) {
+        var indentation = " ".repeat(
+            indentedKey.length() - indentedKey.stripLeading().length() + 2);
+        yaml.append(indentedKey).append(": !vault |\n");
+        vaultText.lines().forEach(
+            line -> yaml.append(indentation).append(line).append('\n'));
+    }
+}
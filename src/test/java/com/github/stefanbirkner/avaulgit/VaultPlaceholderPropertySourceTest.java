@@ -0,0 +1,92 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+import org.springframework.core.env.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class VaultPlaceholderPropertySourceTest {
+    private static final String PLACEHOLDER = "${vault($ANSIBLE_VAULT;1.1;AES256"
+        + " 33376630363236353839326136323337616663396463656632623265363339343537653937616139"
+        + "6430356636313138366364643337653765383231656234630a613732363764383865613361656331"
+        + "30323763636135383930323538356537326133613736633737343361373035626239653738393562"
+        + "3062313433373737330a363931323135336163656337393630353536396530383366663030613738"
+        + "3833)}";
+    private final StandardEnvironment environment = new StandardEnvironment();
+    private final DecryptionStatistics statistics = new DecryptionStatistics();
+    private final VaultProcessor processor = new VaultProcessor(
+        statistics,
+        new DecryptionCache());
+
+    @Test
+    void placeholder_with_vault_text_is_resolved_to_plaintext() {
+        addProperties(
+            "vault.password", "the-secret-vault-key",
+            "my.secret", PLACEHOLDER);
+
+        processor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("my.secret"))
+            .isEqualTo("original secret");
+    }
+
+    @Test
+    void vault_text_is_decrypted_only_once() {
+        addProperties(
+            "vault.password", "the-secret-vault-key",
+            "first.secret", PLACEHOLDER,
+            "second.secret", PLACEHOLDER);
+        processor.postProcessEnvironment(environment, null);
+
+        environment.getProperty("first.secret");
+        environment.getProperty("second.secret");
+
+        assertThat(statistics.decryptedSecrets()).isEqualTo(1);
+        assertThat(statistics.cacheHits()).isEqualTo(1);
+    }
+
+    @Test
+    void vault_text_is_not_decrypted_before_placeholder_is_resolved() {
+        addProperties(
+            "vault.password", "the-secret-vault-key",
+            "my.secret", PLACEHOLDER);
+
+        processor.postProcessEnvironment(environment, null);
+
+        assertThat(statistics.decryptedSecrets()).isZero();
+    }
+
+    @Test
+    void user_is_told_that_they_use_wrong_password() {
+        addProperties(
+            "vault.password", "wrong password",
+            "my.secret", PLACEHOLDER);
+        processor.postProcessEnvironment(environment, null);
+
+        assertThatThrownBy(() -> environment.getProperty("my.secret"))
+            .hasMessage("Cannot decrypt vault placeholder. Either the vault"
+                + " password is wrong or the vault text is corrupt.");
+    }
+
+    @Test
+    void other_properties_are_not_provided() {
+        var propertySource = new VaultPlaceholderPropertySource(
+            () -> new Decryptor("the-secret-vault-key"),
+            statistics);
+
+        assertThat(propertySource.getProperty("vault.password")).isNull();
+    }
+
+    private void addProperties(
+        String... namesAndValues
+    ) {
+        var properties = new HashMap<String, Object>();
+        for (var i = 0; i < namesAndValues.length; i += 2)
+            properties.put(namesAndValues[i], namesAndValues[i + 1]);
+        environment.getPropertySources().addFirst(
+            new MapPropertySource("test properties", properties));
+    }
+}
@@ -37,6 +37,38 @@ class VaultProcessorTest {
             .isEqualTo("original secret");
     }
 
+    @Test
+    void secret_that_is_stored_in_multiple_property_sources_is_decrypted_in_each_of_them() {
+        var secret = new Secret(
+            """
+                $ANSIBLE_VAULT;1.1;AES256
+                33376630363236353839326136323337616663396463656632623265363339343537653937616139
+                6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+                30323763636135383930323538356537326133613736633737343361373035626239653738393562
+                3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+                3833
+                """);
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "first properties",
+                Map.of(
+                    "vault.password",
+                    "the-secret-vault-key",
+                    "first.secret",
+                    secret)));
+        environment.getPropertySources().addLast(
+            new MapPropertySource(
+                "second properties",
+                Map.of("second.secret", secret)));
+
+        processor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("first.secret"))
+            .isEqualTo("original secret");
+        assertThat(environment.getProperty("second.secret"))
+            .isEqualTo("original secret");
+    }
+
     @Test
     void unencrypted_property_is_not_changed() {
         environment.getPropertySources().addFirst(
@@ -112,6 +144,174 @@ class VaultProcessorTest {
             .hasCauseInstanceOf(InvalidVaultTextException.class);
     }
 
+    @Test
+    void property_is_decrypted_in_the_background_if_async_decryption_is_enabled() {
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "test properties",
+                Map.of(
+                    "vault.password",
+                    "the-secret-vault-key",
+                    "vault.async-decryption",
+                    "true",
+                    "my.secret",
+                    new Secret(
+                        """
+                            $ANSIBLE_VAULT;1.1;AES256
+                            33376630363236353839326136323337616663396463656632623265363339343537653937616139
+                            6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+                            30323763636135383930323538356537326133613736633737343361373035626239653738393562
+                            3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+                            3833
+                            """))));
+
+        processor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("my.secret"))
+            .isEqualTo("original secret");
+    }
+
+    @Test
+    void invalid_vault_text_is_reported_when_property_is_read_if_async_decryption_is_enabled() {
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "test properties",
+                Map.of(
+                    "vault.password",
+                    "the-secret-vault-key",
+                    "vault.async-decryption",
+                    "true",
+                    "my.secret",
+                    new Secret(
+                        """
+                            $ANSIBLE_VAULT;1.1;AES256
+                            33376630363236353839326136323337616663396463656632623265363339343537653937616139
+                            6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+                            30323763636135383930323538356537326133613736633737343361373035626239653738393562
+                            3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+                            383
+                            """))));
+        processor.postProcessEnvironment(environment, null);
+
+        assertThatThrownBy(() -> environment.getProperty("my.secret"))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessage("Cannot decrypt property 'my.secret'.")
+            .hasCauseInstanceOf(InvalidVaultTextException.class);
+    }
+
+    @Test
+    void wrong_password_is_detected_with_a_single_secret_and_all_secrets_are_reported() throws Exception {
+        var encryptor = new VaultTextEncryptor("the-secret-vault-key");
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "first properties",
+                Map.of(
+                    "vault.password",
+                    "wrong password",
+                    "vault.async-decryption",
+                    "true",
+                    "first.secret",
+                    new Secret(encryptor.encrypt("first secret")))));
+        environment.getPropertySources().addLast(
+            new MapPropertySource(
+                "second properties",
+                Map.of(
+                    "second.secret",
+                    new Secret(encryptor.encrypt("second secret")))));
+        var statistics = new DecryptionStatistics();
+
+        assertThatThrownBy(
+            () -> new VaultProcessor(statistics, new DecryptionCache())
+                .postProcessEnvironment(environment, null))
+            .hasMessage(
+                "Cannot decrypt secrets because the vault password is wrong or"
+                    + " the value of property 'first.secret' is corrupt."
+                    + " Secrets of the following properties are affected:"
+                    + System.lineSeparator()
+                    + "  'first.secret' of 'first properties'"
+                    + System.lineSeparator()
+                    + "  'second.secret' of 'second properties'")
+            .hasCauseInstanceOf(WrongSignatureException.class);
+        assertThat(statistics.wrongSignatures()).isEqualTo(1);
+    }
+
+    @Test
+    void password_is_verified_with_another_secret_if_the_first_vault_text_is_corrupt() throws Exception {
+        var encryptor = new VaultTextEncryptor("the-secret-vault-key");
+        var properties = new LinkedHashMap<String, Object>();
+        properties.put("vault.password", "wrong password");
+        properties.put("corrupt.secret", new Secret("corrupt vault text"));
+        properties.put("my.secret", new Secret(encryptor.encrypt("my secret")));
+        environment.getPropertySources().addFirst(
+            new MapPropertySource("test properties", properties));
+
+        assertThatThrownBy(() -> processor.postProcessEnvironment(environment, null))
+            .hasMessageStartingWith(
+                "Cannot decrypt secrets because the vault password is wrong or"
+                    + " the value of property 'my.secret' is corrupt.")
+            .hasCauseInstanceOf(WrongSignatureException.class);
+    }
+
+    @Test
+    void secrets_that_have_not_been_read_are_reported_if_secret_access_is_tracked() {
+        var secret = new Secret(
+            """
+                $ANSIBLE_VAULT;1.1;AES256
+                33376630363236353839326136323337616663396463656632623265363339343537653937616139
+                6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+                30323763636135383930323538356537326133613736633737343361373035626239653738393562
+                3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+                3833
+                """);
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "test properties",
+                Map.of(
+                    "vault.password",
+                    "the-secret-vault-key",
+                    "vault.track-secret-access",
+                    "true",
+                    "used.secret",
+                    secret,
+                    "unused.secret",
+                    secret)));
+        processor.postProcessEnvironment(environment, null);
+
+        environment.getProperty("used.secret");
+
+        var propertySource = (DecryptedPropertySource) environment
+            .getPropertySources()
+            .get("test properties decrypted");
+        assertThat(propertySource.getSecretAccessTracker().getUnusedSecrets())
+            .containsExactly("'unused.secret' of 'test properties'");
+    }
+
+    @Test
+    void secret_access_is_not_tracked_by_default() {
+        environment.getPropertySources().addFirst(
+            new MapPropertySource(
+                "test properties",
+                Map.of(
+                    "vault.password",
+                    "the-secret-vault-key",
+                    "my.secret",
+                    new Secret(
+                        """
+                            $ANSIBLE_VAULT;1.1;AES256
+                            33376630363236353839326136323337616663396463656632623265363339343537653937616139
+                            6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+                            30323763636135383930323538356537326133613736633737343361373035626239653738393562
+                            3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+                            3833
+                            """))));
+        processor.postProcessEnvironment(environment, null);
+
+        var propertySource = (DecryptedPropertySource) environment
+            .getPropertySources()
+            .get("test properties decrypted");
+        assertThat(propertySource.getSecretAccessTracker()).isNull();
+    }
+
     @Test
     void no_password_is_needed_if_there_is_no_encrypted_property() {
         environment.getPropertySources().addFirst(
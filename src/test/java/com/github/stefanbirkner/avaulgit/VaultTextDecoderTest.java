@@ -0,0 +1,116 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class VaultTextDecoderTest {
+    private static final String HEXLIFIED_VAULT_TEXT = """
+        33376630363236353839326136323337616663396463656632623265363339343537653937616139
+        6430356636313138366364643337653765383231656234630a613732363764383865613361656331
+        30323763636135383930323538356537326133613736633737343361373035626239653738393562
+        3062313433373737330a363931323135336163656337393630353536396530383366663030613738
+        3833
+        """;
+
+    @Test
+    void salt_hmac_and_ciphertext_are_decoded() throws Exception {
+        var parts = VaultTextDecoder.decode(HEXLIFIED_VAULT_TEXT);
+
+        assertThat(parts).isDeepEqualTo(new byte[][]{
+            HexFormat.of().parseHex("37f06265892a6237afc9dcef2b2e639457e97aa9d05f61186cdd37e7e821eb4c"),
+            HexFormat.of().parseHex("a7267d88ea3aec1027cca58902585e72a3a76c7743a705bb9e7895b0b1437773"),
+            HexFormat.of().parseHex("6912153acec79605569e083ff00a7883")});
+    }
+
+    @Test
+    void vault_text_with_windows_line_breaks_is_decoded() throws Exception {
+        var parts = VaultTextDecoder.decode(
+            HEXLIFIED_VAULT_TEXT.replace("\n", "\r\n"));
+
+        assertThat(parts).isDeepEqualTo(
+            VaultTextDecoder.decode(HEXLIFIED_VAULT_TEXT));
+    }
+
+    @Test
+    void multi_byte_UTF_8_character_in_the_inner_level_is_reported_as_a_single_character() {
+        // inner level: "\u00e9a\n00\n00" with "\u00e9" encoded as C3 A9
+        var vaultText = "c3a9610a30300a3030";
+
+        assertThatThrownBy(() -> VaultTextDecoder.decode(vaultText))
+            .isInstanceOf(InvalidVaultTextException.class)
+            .cause()
+            .hasMessage("not a hexadecimal digit: \"\u00e9\" = 233");
+    }
+
+    // Compares the decoder with unhexlifying each level with HexFormat for
+    // randomly corrupted vault texts. Some mutations add non-ASCII bytes to
+    // the inner level: valid UTF-8 sequences of one to four bytes, a lead
+    // byte without continuation byte, a continuation byte without lead byte
+    // and a byte that is never valid UTF-8.
+    @Test
+    void decoder_rejects_the_same_vault_texts_as_HexFormat_with_the_same_cause() {
+        var random = new Random(42);
+        var mutations = new String[] {
+            "0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
+            "a", "b", "c", "d", "e", "f", "A", "B", "C", "D", "E", "F",
+            "\n", "\r", "g", "\u00e9",
+            "0a", "c3a9", "e282ac", "f09f9880", "c3", "a9", "ff"
+        };
+        for (var i = 0; i < 10_000; ++i) {
+            var vaultText = new StringBuilder(HEXLIFIED_VAULT_TEXT);
+            var position = random.nextInt(vaultText.length());
+            var mutation = mutations[random.nextInt(mutations.length)];
+            switch (random.nextInt(3)) {
+                case 0 -> vaultText.deleteCharAt(position);
+                case 1 -> vaultText.insert(position, mutation);
+                default -> vaultText.replace(position, position + 1, mutation);
+            }
+
+            assertThat(decodeToString(vaultText.toString()))
+                .as(vaultText.toString())
+                .isEqualTo(decodeWithHexFormatToString(vaultText.toString()));
+        }
+    }
+
+    private String decodeToString(
+        String hexlifiedVaultText
+    ) {
+        try {
+            var result = new StringBuilder();
+            for (var part : VaultTextDecoder.decode(hexlifiedVaultText))
+                result.append(HexFormat.of().formatHex(part)).append('\n');
+            return result.toString();
+        } catch (InvalidVaultTextException e) {
+            return e.getCause() == null ? e.getMessage() : e.getCause().toString();
+        }
+    }
+
+    private String decodeWithHexFormatToString(
+        String hexlifiedVaultText
+    ) {
+        try {
+            var withoutLineBreaks = hexlifiedVaultText
+                .replace("\n", "")
+                .replace("\r", "");
+            var parts = new String(
+                HexFormat.of().parseHex(withoutLineBreaks),
+                UTF_8)
+                .split("\n");
+            if (parts.length != 3)
+                return "The vault text is not valid because it has "
+                    + parts.length
+                    + " parts instead of 3 (salt, HMAC, cipher text).";
+            var result = new StringBuilder();
+            for (var part : parts)
+                result.append(HexFormat.of().formatHex(HexFormat.of().parseHex(part))).append('\n');
+            return result.toString();
+        } catch (IllegalArgumentException e) {
+            return e.toString();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.crypto.Cipher.ENCRYPT_MODE;
+
+import java.security.*;
+import java.util.*;
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+// Encrypts plaintexts like Ansible Vault does, so that tests can create many
+// different vault texts.
+class VaultTextEncryptor {
+    private static final int BLOCK_SIZE = 16;
+    private static final int LINE_LENGTH = 80;
+    private final HexFormat hexFormat = HexFormat.of();
+    private final SecureRandom random = new SecureRandom();
+    private final String vaultPassword;
+
+    VaultTextEncryptor(
+        String vaultPassword
+    ) {
+        this.vaultPassword = vaultPassword;
+    }
+
+    String encrypt(
+        String plaintext
+    ) throws GeneralSecurityException {
+        var salt = new byte[32];
+        random.nextBytes(salt);
+        var key = Decryptor.deriveKey(vaultPassword, salt);
+        var cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(
+            ENCRYPT_MODE,
+            new SecretKeySpec(key, 0, 32, "AES"),
+            new IvParameterSpec(Arrays.copyOfRange(key, 64, 64 + 16)));
+        var ciphertext = cipher.doFinal(pad(plaintext.getBytes(UTF_8)));
+        var mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, 32, 32, "AES"));
+        var hmac = mac.doFinal(ciphertext);
+        var inner = hexFormat.formatHex(salt)
+            + "\n" + hexFormat.formatHex(hmac)
+            + "\n" + hexFormat.formatHex(ciphertext);
+        return "$ANSIBLE_VAULT;1.1;AES256\n" + wrap(hexFormat.formatHex(inner.getBytes(UTF_8)));
+    }
+
+    private byte[] pad(
+        byte[] data
+    ) {
+        var padding = BLOCK_SIZE - data.length % BLOCK_SIZE;
+        var padded = Arrays.copyOf(data, data.length + padding);
+        Arrays.fill(padded, data.length, padded.length, (byte) padding);
+        return padded;
+    }
+
+    private String wrap(
+        String hexlified
+    ) {
+        var wrapped = new StringBuilder();
+        for (var start = 0; start < hexlified.length(); start += LINE_LENGTH)
+            wrapped.append(hexlified, start, Math.min(start + LINE_LENGTH, hexlified.length()))
+                .append('\n');
+        return wrapped.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class WarmUpTest {
+    @Test
+    void warm_up_loads_and_decrypts_a_secret_without_failure() {
+        assertThatCode(WarmUp::run)
+            .doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.stefanbirkner.avaulgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.*;
+import java.util.regex.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.*;
+import org.junit.jupiter.api.condition.*;
+import org.springframework.core.io.*;
+import org.yaml.snakeyaml.*;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.*;
+import org.yaml.snakeyaml.resolver.*;
+
+// Compares the shared YAML setup of YamlFactory with creating options and
+// resolver for each resource, like Avaulgit did before. Run it with
+//
+//     mvn test -Dtest=YamlLoadingBenchmarkTest -Dbenchmark=true
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class YamlLoadingBenchmarkTest {
+    private static final int NUMBER_OF_FILES = 60;
+    private static final int WARM_UP_ROUNDS = 50;
+    private static final int MEASURED_ROUNDS = 50;
+
+    @Test
+    void loading_configuration_files_with_shared_and_with_per_resource_setup() {
+        var resources = createResources();
+
+        var perResourceSetup = measure(
+            resources,
+            LoaderWithPerResourceSetup::new);
+        var sharedSetup = measure(
+            resources,
+            OriginTrackedYamlLoaderWithAnsibleVaultSupport::new);
+
+        System.out.printf(
+            "Loading %d files%n"
+                + "  per-resource setup: %,d ns per file%n"
+                + "  shared setup:       %,d ns per file%n",
+            NUMBER_OF_FILES,
+            perResourceSetup,
+            sharedSetup);
+    }
+
+    private List<Resource> createResources() {
+        var resources = new ArrayList<Resource>();
+        for (var file = 0; file < NUMBER_OF_FILES; ++file) {
+            var yaml = new StringBuilder("file-" + file + ":\n");
+            for (var key = 0; key < 20; ++key)
+                yaml.append("  key-").append(key).append(": value ").append(key).append('\n');
+            resources.add(new ByteArrayResource(yaml.toString().getBytes(UTF_8)));
+        }
+        return resources;
+    }
+
+    // Returns the minimal time of all rounds in nanoseconds per file.
+    private long measure(
+        List<Resource> resources,
+        LoaderFactory loaderFactory
+    ) {
+        for (var round = 0; round < WARM_UP_ROUNDS; ++round)
+            loadAll(resources, loaderFactory);
+        var fastestRound = Long.MAX_VALUE;
+        for (var round = 0; round < MEASURED_ROUNDS; ++round) {
+            var start = System.nanoTime();
+            loadAll(resources, loaderFactory);
+            fastestRound = Math.min(fastestRound, System.nanoTime() - start);
+        }
+        return fastestRound / resources.size();
+    }
+
+    private void loadAll(
+        List<Resource> resources,
+        LoaderFactory loaderFactory
+    ) {
+        for (var resource : resources)
+            loaderFactory.create(resource).load();
+    }
+
+    private interface LoaderFactory {
+        OriginTrackedYamlLoaderWithAnsibleVaultSupport create(Resource resource);
+    }
+
+    // Creates the options and the resolver for each resource like the loader
+    // did before YamlFactory existed.
+    private static class LoaderWithPerResourceSetup
+        extends OriginTrackedYamlLoaderWithAnsibleVaultSupport
+    {
+        LoaderWithPerResourceSetup(
+            Resource resource
+        ) {
+            super(resource);
+        }
+
+        @Override
+        protected Yaml createYaml() {
+            var loaderOptions = new LoaderOptions();
+            loaderOptions.setAllowDuplicateKeys(false);
+            loaderOptions.setMaxAliasesForCollections(Integer.MAX_VALUE);
+            loaderOptions.setAllowRecursiveKeys(true);
+            loaderOptions.setCodePointLimit(Integer.MAX_VALUE);
+            var dumperOptions = new DumperOptions();
+            return new Yaml(
+                new OriginTrackingConstructor(loaderOptions),
+                new Representer(dumperOptions),
+                dumperOptions,
+                loaderOptions,
+                new NoTimestampResolver());
+        }
+    }
+
+    private static final class NoTimestampResolver extends Resolver {
+
+        @Override
+        public void addImplicitResolver(
+            Tag tag,
+            Pattern regexp,
+            String first,
+            int limit
+        ) {
+            if (tag != Tag.TIMESTAMP)
+                super.addImplicitResolver(tag, regexp, first, limit);
+        }
+    }
+}